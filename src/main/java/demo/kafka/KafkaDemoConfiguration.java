@@ -1,23 +1,42 @@
 package demo.kafka;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
+import demo.kafka.consumer.AdaptivePollController;
+import demo.kafka.properties.KafkaDemoProperties;
+import demo.kafka.retry.PartitionPausingErrorHandler;
+import demo.kafka.retry.RetryStateRebalanceListener;
+import demo.kafka.tracing.LatencyTracker;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.CooperativeStickyAssignor;
+import org.apache.kafka.clients.consumer.RangeAssignor;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.env.Environment;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ContainerAwareErrorHandler;
 import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.SeekToCurrentErrorHandler;
 import org.springframework.retry.support.RetryTemplate;
@@ -30,32 +49,52 @@ public class KafkaDemoConfiguration {
 
     /**
      * Stateful retry listener.
+     *
+     * With the PARTITION backoff mode only the partition of the failed record is paused during the backoff, so the
+     * other partitions assigned to the consumer continue to be processed.
      */
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaStatefulRetryListenerContainerFactory(final ConsumerFactory<String, String> consumerFactory) {
-
-        final SeekToCurrentErrorHandler errorHandler =
-                new SeekToCurrentErrorHandler((record, exception) -> {
-                    // 4 seconds pause, 4 retries.
-                }, new FixedBackOff(4000L, 4L));
-
+    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaStatefulRetryListenerContainerFactory(final ConsumerFactory<String, String> consumerFactory, final ContainerAwareErrorHandler statefulRetryErrorHandler,
+                                                                                                               final LatencyTracker latencyTracker, final MeterRegistry meterRegistry) {
         final ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory();
         factory.setConsumerFactory(consumerFactory);
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.RECORD);
-        factory.setErrorHandler(errorHandler);
+        factory.getContainerProperties().setConsumerRebalanceListener(new RetryStateRebalanceListener(latencyTracker, statefulRetryErrorHandler, meterRegistry));
+        factory.setErrorHandler(statefulRetryErrorHandler);
         return factory;
     }
 
+    @Bean
+    public ContainerAwareErrorHandler statefulRetryErrorHandler(final KafkaDemoProperties properties, final LatencyTracker latencyTracker) {
+        // 4 seconds pause, 4 retries.
+        final FixedBackOff backOff = new FixedBackOff(4000L, 4L);
+        if (properties.getRetry().getBackoffMode() == KafkaDemoProperties.BackoffMode.PARTITION) {
+            return new PartitionPausingErrorHandler((record, exception) ->
+                    latencyTracker.discard(record.topic(), record.partition(), record.offset()), backOff);
+        }
+        final SeekToCurrentErrorHandler errorHandler = new SeekToCurrentErrorHandler((record, exception) ->
+                latencyTracker.discard(record.topic(), record.partition(), record.offset()), backOff);
+        // Each failed attempt is already logged, sampled, by the RetryLogger, so the container only logs it at debug.
+        errorHandler.setLogLevel(KafkaException.Level.DEBUG);
+        return errorHandler;
+    }
+
     /**
      * Stateless retry listener.
      */
     @Bean
-    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaStatelessRetryListenerContainerFactory(final ConsumerFactory<String, String> consumerFactory, final RetryTemplate retryTemplate) {
+    public ConcurrentKafkaListenerContainerFactory<String, String> kafkaStatelessRetryListenerContainerFactory(final ConsumerFactory<String, String> consumerFactory, final RetryTemplate retryTemplate,
+                                                                                                                final LatencyTracker latencyTracker, final MeterRegistry meterRegistry) {
         final ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory();
         factory.setConsumerFactory(consumerFactory);
+        factory.getContainerProperties().setConsumerRebalanceListener(new RetryStateRebalanceListener(latencyTracker, null, meterRegistry));
         factory.setRetryTemplate(retryTemplate);
         factory.setRecoveryCallback((context -> {
-            log.warn("**** Retries exhausted - error class: "+context.getLastThrowable()+" - error message: "+context.getLastThrowable().getMessage());
+            log.warn("**** Retries exhausted - error class: {} - error message: {}", context.getLastThrowable(), context.getLastThrowable().getMessage());
+            final ConsumerRecord record = (ConsumerRecord) context.getAttribute("record");
+            if (record != null) {
+                latencyTracker.discard(record.topic(), record.partition(), record.offset());
+            }
             // Return null to mark processing complete.
             return null;
         }));
@@ -77,22 +116,67 @@ public class KafkaDemoConfiguration {
 
     @Bean
     public ConsumerFactory<String, String> consumerFactory(@Value("${kafka.bootstrap-servers}") final String bootstrapServers,
-                                                           @Value("${kafka.consumer.maxPollIntervalMs}") final String maxPollIntervalMs) {
+                                                           @Value("${kafka.consumer.maxPollIntervalMs}") final String maxPollIntervalMs,
+                                                           final KafkaDemoProperties properties,
+                                                           final AdaptivePollController adaptivePollController,
+                                                           final Environment environment) {
         final Map<String, Object> config = new HashMap<>();
         config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         config.put(ConsumerConfig.GROUP_ID_CONFIG, "demo-kafka");
         config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         config.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, maxPollIntervalMs);
-        return new DefaultKafkaConsumerFactory<>(config);
+        // Cooperative rebalancing: only the partitions that move are revoked, the rest keep being processed.
+        config.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, properties.getRebalance().isEagerCompatible()
+                ? List.of(CooperativeStickyAssignor.class.getName(), RangeAssignor.class.getName())
+                : List.of(CooperativeStickyAssignor.class.getName()));
+        if (properties.getStartup().isStaticMembership()) {
+            // Static membership: a restarted instance rejoins with the same member identity, skipping a full rebalance.
+            if (!Binder.get(environment).bind("kafkademo.instance-id", UUID.class).isBound()) {
+                throw new IllegalStateException("kafkademo.startup.staticMembership requires kafkademo.instanceId to be set");
+            }
+            config.put(ConsumerConfig.GROUP_INSTANCE_ID_CONFIG, properties.getInstanceId().toString());
+            // Long enough to cover a restart, as the default would expire while the instance is still starting.
+            config.put(ConsumerConfig.SESSION_TIMEOUT_MS_CONFIG, properties.getStartup().getSessionTimeoutMs());
+        }
+        if (properties.getPoll().isAdaptive()) {
+            // Each poll is limited to the adaptive limit, so max.poll.records is the upper bound.
+            config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, properties.getPoll().getMaxRecords());
+        }
+        final DefaultKafkaConsumerFactory<String, String> consumerFactory = new DefaultKafkaConsumerFactory<>(config);
+        if (properties.getPoll().isAdaptive()) {
+            consumerFactory.addPostProcessor(adaptivePollController);
+        }
+        return consumerFactory;
     }
 
     @Bean
-    public ProducerFactory<String, String> producerFactory(@Value("${kafka.bootstrap-servers}") final String bootstrapServers) {
+    public ProducerFactory<String, String> producerFactory(@Value("${kafka.bootstrap-servers}") final String bootstrapServers,
+                                                           @Value("${kafka.consumer.maxPollIntervalMs}") final long maxPollIntervalMs,
+                                                           final KafkaDemoProperties properties) {
+        if (properties.getProducer().getSendTimeoutMs() >= maxPollIntervalMs) {
+            throw new IllegalStateException("kafkademo.producer.sendTimeoutMs must be below kafka.consumer.maxPollIntervalMs");
+        }
         final Map<String, Object> config = new HashMap<>();
         config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, properties.getProducer().resolveLingerMs());
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, properties.getProducer().resolveBatchSize());
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, properties.getProducer().resolveCompressionType());
+        // send() blocks while the buffer is full or the metadata is unavailable, which counts towards the send timeout.
+        config.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, properties.getProducer().getSendTimeoutMs());
         return new DefaultKafkaProducerFactory<>(config);
     }
+
+    /**
+     * Keep the listener beans eager when lazy initialisation is enabled (fast-startup profile), as a lazy listener
+     * would never be registered with its container.
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter kafkaListenerLazyInitializationExcludeFilter() {
+        return (beanName, beanDefinition, beanType) -> beanType != null
+                && !MethodIntrospector.selectMethods(beanType, (MethodIntrospector.MetadataLookup<KafkaListener>) method ->
+                        AnnotatedElementUtils.findMergedAnnotation(method, KafkaListener.class)).isEmpty();
+    }
 }
@@ -0,0 +1,207 @@
+package demo.kafka.actuator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+
+import demo.kafka.properties.KafkaDemoProperties;
+import demo.kafka.tracing.LatencyTracker;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the consumer lag and retry backlog of each partition, for every listener consumer group.
+ *
+ * The committed and end offsets are fetched from the admin client in bulk (one request per group for the committed
+ * offsets, one request for the end offsets of all partitions) and cached, so that frequent scrapes do not add load on
+ * the brokers.  A failed fetch is cached for the same time, serving the last known offsets (or none), so that scrapes
+ * do not each wait on the admin client while the brokers are unavailable.  The retry backlog and the time left before
+ * max.poll.interval.ms come from this instance and are always current.
+ */
+@Slf4j
+@Component
+public class ConsumerBacklogService {
+
+    private static final String LAST_POLL_SECONDS_AGO_METRIC = "last-poll-seconds-ago";
+
+    private final KafkaListenerEndpointRegistry registry;
+    private final LatencyTracker latencyTracker;
+    private final KafkaDemoProperties.Backlog properties;
+    private final String bootstrapServers;
+    private final long maxPollIntervalMs;
+
+    private AdminClient adminClient;
+    private Offsets cachedOffsets;
+
+    public ConsumerBacklogService(final KafkaListenerEndpointRegistry registry, final LatencyTracker latencyTracker,
+                                  final KafkaDemoProperties properties,
+                                  @Value("${kafka.bootstrap-servers}") final String bootstrapServers,
+                                  @Value("${kafka.consumer.maxPollIntervalMs}") final long maxPollIntervalMs) {
+        this.registry = registry;
+        this.latencyTracker = latencyTracker;
+        this.properties = properties.getBacklog();
+        this.bootstrapServers = bootstrapServers;
+        this.maxPollIntervalMs = maxPollIntervalMs;
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (adminClient != null) {
+            adminClient.close();
+        }
+    }
+
+    /**
+     * The backlog of each partition, by consumer group.
+     */
+    public Map<String, List<PartitionBacklog>> backlog() {
+        final Map<String, Set<TopicPartition>> assigned = new LinkedHashMap<>();
+        final Map<TopicPartition, Long> timeLeft = new HashMap<>();
+        for (final MessageListenerContainer container : registry.getListenerContainers()) {
+            final Collection<TopicPartition> partitions = container.getAssignedPartitions();
+            final Set<TopicPartition> groupPartitions = assigned.computeIfAbsent(container.getGroupId(), group -> new HashSet<>());
+            if (partitions != null) {
+                groupPartitions.addAll(partitions);
+                final Long containerTimeLeft = timeLeftBeforePollInterval(container);
+                partitions.forEach(partition -> timeLeft.put(partition, containerTimeLeft));
+            }
+        }
+
+        final Offsets offsets = offsets(assigned);
+        final Map<TopicPartition, LatencyTracker.RetryBacklog> retryBacklog = latencyTracker.retryBacklog();
+        final long now = System.currentTimeMillis();
+
+        final Map<String, List<PartitionBacklog>> backlog = new LinkedHashMap<>();
+        assigned.forEach((group, groupPartitions) -> {
+            final Map<TopicPartition, Long> committed = offsets.committed.getOrDefault(group, Map.of());
+            final Set<TopicPartition> partitions = new HashSet<>(groupPartitions);
+            partitions.addAll(committed.keySet());
+
+            final List<PartitionBacklog> partitionBacklogs = new ArrayList<>();
+            partitions.stream()
+                    .sorted(Comparator.comparing(TopicPartition::topic).thenComparing(TopicPartition::partition))
+                    .forEach(partition -> {
+                        final Long committedOffset = committed.get(partition);
+                        final Long endOffset = offsets.end.get(partition);
+                        final LatencyTracker.RetryBacklog retry = retryBacklog.get(partition);
+                        partitionBacklogs.add(PartitionBacklog.builder()
+                                .topic(partition.topic())
+                                .partition(partition.partition())
+                                .committedOffset(committedOffset)
+                                .endOffset(endOffset)
+                                .lag(committedOffset != null && endOffset != null ? Math.max(0, endOffset - committedOffset) : null)
+                                .recordsInRetry(retry != null ? retry.getRecords() : 0)
+                                .oldestRetryAgeMs(retry != null ? now - retry.getOldestFirstAttemptTime() : null)
+                                .timeLeftBeforePollIntervalMs(timeLeft.get(partition))
+                                .build());
+                    });
+            backlog.put(group, partitionBacklogs);
+        });
+        return backlog;
+    }
+
+    /**
+     * The committed offsets of the given groups and the end offsets of their partitions, from the cache if it is fresh.
+     */
+    private synchronized Offsets offsets(final Map<String, Set<TopicPartition>> assigned) {
+        final long now = System.currentTimeMillis();
+        if (cachedOffsets != null && now - cachedOffsets.fetchedAt < properties.getLagCacheTtlMs()
+                && cachedOffsets.groups.containsAll(assigned.keySet())) {
+            return cachedOffsets;
+        }
+        try {
+            final Map<String, KafkaFuture<Map<TopicPartition, OffsetAndMetadata>>> committedFutures = new HashMap<>();
+            assigned.keySet().forEach(group -> committedFutures.put(group, adminClient().listConsumerGroupOffsets(group).partitionsToOffsetAndMetadata()));
+
+            final Map<String, Map<TopicPartition, Long>> committed = new HashMap<>();
+            final Set<TopicPartition> partitions = new HashSet<>();
+            assigned.values().forEach(partitions::addAll);
+            for (final Map.Entry<String, KafkaFuture<Map<TopicPartition, OffsetAndMetadata>>> entry : committedFutures.entrySet()) {
+                final Map<TopicPartition, Long> groupCommitted = new HashMap<>();
+                entry.getValue().get(properties.getAdminTimeoutMs(), TimeUnit.MILLISECONDS).forEach((partition, offset) -> {
+                    if (offset != null) {
+                        groupCommitted.put(partition, offset.offset());
+                    }
+                });
+                committed.put(entry.getKey(), groupCommitted);
+                partitions.addAll(groupCommitted.keySet());
+            }
+
+            final Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+            partitions.forEach(partition -> latest.put(partition, OffsetSpec.latest()));
+            final Map<TopicPartition, Long> end = new HashMap<>();
+            if (!latest.isEmpty()) {
+                adminClient().listOffsets(latest).all().get(properties.getAdminTimeoutMs(), TimeUnit.MILLISECONDS)
+                        .forEach((partition, info) -> end.put(partition, info.offset()));
+            }
+            cachedOffsets = new Offsets(assigned.keySet(), committed, end, now);
+        } catch (Exception e) {
+            log.warn("Failed to fetch consumer group offsets: {}", e.getMessage());
+            cachedOffsets = cachedOffsets != null
+                    ? new Offsets(assigned.keySet(), cachedOffsets.committed, cachedOffsets.end, now)
+                    : new Offsets(assigned.keySet(), Map.of(), Map.of(), now);
+        }
+        return cachedOffsets;
+    }
+
+    /**
+     * The time left before the container's consumers exceed max.poll.interval.ms, or null if it is not polling.
+     */
+    private Long timeLeftBeforePollInterval(final MessageListenerContainer container) {
+        if (!container.isRunning()) {
+            return null;
+        }
+        Long timeLeft = null;
+        for (final Map<MetricName, ? extends Metric> metrics : container.metrics().values()) {
+            for (final Map.Entry<MetricName, ? extends Metric> metric : metrics.entrySet()) {
+                if (metric.getKey().name().equals(LAST_POLL_SECONDS_AGO_METRIC) && metric.getValue().metricValue() instanceof Number) {
+                    final long consumerTimeLeft = maxPollIntervalMs - (long) (((Number) metric.getValue().metricValue()).doubleValue() * 1000);
+                    timeLeft = timeLeft == null ? consumerTimeLeft : Math.min(timeLeft, consumerTimeLeft);
+                }
+            }
+        }
+        return timeLeft;
+    }
+
+    private synchronized AdminClient adminClient() {
+        if (adminClient == null) {
+            adminClient = AdminClient.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers));
+        }
+        return adminClient;
+    }
+
+    private static class Offsets {
+        // The groups the offsets were fetched for.
+        private final Set<String> groups;
+        private final Map<String, Map<TopicPartition, Long>> committed;
+        private final Map<TopicPartition, Long> end;
+        private final long fetchedAt;
+
+        private Offsets(final Set<String> groups, final Map<String, Map<TopicPartition, Long>> committed, final Map<TopicPartition, Long> end,
+                        final long fetchedAt) {
+            this.groups = new HashSet<>(groups);
+            this.committed = committed;
+            this.end = end;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package demo.kafka.actuator;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * The consumer lag and retry backlog of a single partition for a consumer group.
+ *
+ * Offsets and lag are null when they could not be fetched, and the time left before max.poll.interval.ms is null when
+ * the partition is not assigned to a consumer in this instance.
+ */
+@Getter
+@Builder
+public class PartitionBacklog {
+    private final String topic;
+    private final int partition;
+    private final Long committedOffset;
+    private final Long endOffset;
+    private final Long lag;
+    private final int recordsInRetry;
+    private final Long oldestRetryAgeMs;
+    private final Long timeLeftBeforePollIntervalMs;
+}
@@ -0,0 +1,26 @@
+package demo.kafka.actuator;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint (/actuator/retrybacklog) reporting, per consumer group and partition, the committed offset, end
+ * offset, lag, records in retry, age of the oldest record in retry and the time left before max.poll.interval.ms.
+ */
+@RequiredArgsConstructor
+@Component
+@Endpoint(id = "retrybacklog")
+public class RetryBacklogEndpoint {
+
+    private final ConsumerBacklogService consumerBacklogService;
+
+    @ReadOperation
+    public Map<String, List<PartitionBacklog>> backlog() {
+        return consumerBacklogService.backlog();
+    }
+}
@@ -0,0 +1,46 @@
+package demo.kafka.actuator;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+/**
+ * Health of the listener consumer groups, summarising the lag and retry backlog of each group.
+ *
+ * The health is down if a consumer has exceeded max.poll.interval.ms, as it will have been removed from its group.
+ */
+@RequiredArgsConstructor
+@Component
+public class RetryBacklogHealthIndicator extends AbstractHealthIndicator {
+
+    private final ConsumerBacklogService consumerBacklogService;
+
+    @Override
+    protected void doHealthCheck(final Health.Builder builder) {
+        boolean pollIntervalExceeded = false;
+        for (final Map.Entry<String, List<PartitionBacklog>> group : consumerBacklogService.backlog().entrySet()) {
+            final List<PartitionBacklog> partitions = group.getValue();
+            final Long minTimeLeft = partitions.stream().map(PartitionBacklog::getTimeLeftBeforePollIntervalMs)
+                    .filter(Objects::nonNull).min(Long::compare).orElse(null);
+            pollIntervalExceeded |= minTimeLeft != null && minTimeLeft <= 0;
+
+            final Map<String, Object> details = new LinkedHashMap<>();
+            details.put("lag", partitions.stream().map(PartitionBacklog::getLag).filter(Objects::nonNull).mapToLong(Long::longValue).sum());
+            details.put("recordsInRetry", partitions.stream().mapToInt(PartitionBacklog::getRecordsInRetry).sum());
+            details.put("oldestRetryAgeMs", partitions.stream().map(PartitionBacklog::getOldestRetryAgeMs).filter(Objects::nonNull).max(Long::compare).orElse(null));
+            details.put("timeLeftBeforePollIntervalMs", minTimeLeft);
+            builder.withDetail(group.getKey(), details);
+        }
+        if (pollIntervalExceeded) {
+            builder.down();
+        } else {
+            builder.up();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package demo.kafka.consumer;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import demo.kafka.properties.KafkaDemoProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerPostProcessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Adapts how many records each poll hands to the listener to the observed processing time.
+ *
+ * max.poll.records is fixed when the consumer is created, so the consumer is created with the upper bound and each
+ * poll is limited to the current limit.  The records beyond the limit are held back and handed over by later polls,
+ * ahead of any new records, and their partitions are paused meanwhile so they are not fetched again.  A seek on a
+ * partition (e.g. by the error handler to retry a record) discards its held back records, which are then re-fetched
+ * from the new position.  The pauses and resumes requested by the container are tracked separately, so that neither
+ * undoes the other, and held back records of partitions the container has paused are not handed over.
+ *
+ * The processing time per record is measured as the time between a poll returning and the next poll, divided by the
+ * records handed over.  The limit is set so that a batch takes the target fraction of max.poll.interval.ms: it grows
+ * (at most doubling per poll) while the third party is fast, and shrinks immediately when it slows down.  The limit
+ * and the processing time are shared by the consumers of a consumer group.
+ *
+ * The limit, the measured processing time and the held back records are exposed as metrics per consumer group.
+ */
+@Slf4j
+@Component
+public class AdaptivePollController implements ConsumerPostProcessor<String, String> {
+
+    private final KafkaDemoProperties.Poll properties;
+    private final long maxPollIntervalMs;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, GroupLimit> groupLimits = new ConcurrentHashMap<>();
+
+    public AdaptivePollController(final KafkaDemoProperties properties,
+                                  @Value("${kafka.consumer.maxPollIntervalMs}") final long maxPollIntervalMs,
+                                  final MeterRegistry meterRegistry) {
+        this.properties = properties.getPoll();
+        this.maxPollIntervalMs = maxPollIntervalMs;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Consumer<String, String> apply(final Consumer<String, String> consumer) {
+        final String groupId = consumer.groupMetadata().groupId();
+        final ProxyFactory proxyFactory = new ProxyFactory(consumer);
+        proxyFactory.addAdvice(new PollLimiter(consumer, groupLimits.computeIfAbsent(groupId, GroupLimit::new)));
+        @SuppressWarnings("unchecked")
+        final Consumer<String, String> proxy = (Consumer<String, String>) proxyFactory.getProxy();
+        return proxy;
+    }
+
+    /**
+     * The limit for a batch taking the given time per record, within the configured bounds.
+     */
+    int limitFor(final double recordMs, final int currentLimit) {
+        final int target = recordMs > 0
+                ? (int) Math.min(Integer.MAX_VALUE, (maxPollIntervalMs * properties.getTargetUtilisation()) / recordMs)
+                : properties.getMaxRecords();
+        final int limit = Math.min(target, currentLimit * 2);
+        return Math.max(properties.getMinRecords(), Math.min(properties.getMaxRecords(), limit));
+    }
+
+    /**
+     * The limit of a consumer group, and its metrics.  The gauge is registered once per group and holds on to the
+     * limit, so it stays current whichever consumers of the group come and go.
+     */
+    private class GroupLimit {
+        private final String groupId;
+        private final AtomicInteger limit;
+        private final Timer recordTimer;
+        private final Counter deferredCounter;
+        private double averageRecordMs = -1;
+
+        private GroupLimit(final String groupId) {
+            this.groupId = groupId;
+            this.limit = meterRegistry.gauge("kafkademo.poll.records.limit", Tags.of("group", groupId), new AtomicInteger(properties.getInitialRecords()));
+            this.recordTimer = meterRegistry.timer("kafkademo.poll.record.time", "group", groupId);
+            this.deferredCounter = meterRegistry.counter("kafkademo.poll.records.deferred", "group", groupId);
+        }
+
+        private synchronized void adjust(final double recordMs) {
+            recordTimer.record((long) (recordMs * 1000), TimeUnit.MICROSECONDS);
+            averageRecordMs = averageRecordMs < 0 ? recordMs : averageRecordMs + properties.getSmoothing() * (recordMs - averageRecordMs);
+            final int previous = limit.get();
+            final int next = limitFor(averageRecordMs, previous);
+            if (next != previous) {
+                log.debug("Group {} records per poll {} -> {} ({}ms per record)", groupId, previous, next, averageRecordMs);
+                limit.set(next);
+            }
+        }
+    }
+
+    /**
+     * Limits the polls of a single consumer.  It is only called on the consumer's thread.
+     */
+    private static class PollLimiter implements MethodInterceptor {
+        private final Consumer<String, String> consumer;
+        private final GroupLimit groupLimit;
+        // Records held back from earlier polls, in partition order.
+        private final Map<TopicPartition, Deque<ConsumerRecord<String, String>>> deferred = new LinkedHashMap<>();
+        // Partitions paused here because they have records held back.
+        private final Set<TopicPartition> held = new HashSet<>();
+        // Partitions paused by the container.
+        private final Set<TopicPartition> containerPaused = new HashSet<>();
+        private long lastPollReturnedNanos;
+        private int lastHanded;
+
+        private PollLimiter(final Consumer<String, String> consumer, final GroupLimit groupLimit) {
+            this.consumer = consumer;
+            this.groupLimit = groupLimit;
+        }
+
+        @Override
+        public Object invoke(final MethodInvocation invocation) throws Throwable {
+            switch (invocation.getMethod().getName()) {
+                case "poll":
+                    return poll(invocation);
+                case "pause":
+                    containerPaused.addAll(partitions(invocation));
+                    return invocation.proceed();
+                case "resume":
+                    final Collection<TopicPartition> resumed = partitions(invocation);
+                    containerPaused.removeAll(resumed);
+                    consumer.resume(resumed.stream().filter(partition -> !held.contains(partition)).collect(Collectors.toList()));
+                    return null;
+                case "paused":
+                    final Set<TopicPartition> paused = new HashSet<>(consumer.paused());
+                    held.stream().filter(partition -> !containerPaused.contains(partition)).forEach(paused::remove);
+                    return paused;
+                case "seek":
+                    release((TopicPartition) invocation.getArguments()[0]);
+                    return invocation.proceed();
+                case "seekToBeginning":
+                case "seekToEnd":
+                    partitions(invocation).forEach(this::release);
+                    return invocation.proceed();
+                default:
+                    return invocation.proceed();
+            }
+        }
+
+        /**
+         * The partitions argument of pause, resume, seekToBeginning and seekToEnd.
+         */
+        @SuppressWarnings("unchecked")
+        private static Collection<TopicPartition> partitions(final MethodInvocation invocation) {
+            return (Collection<TopicPartition>) invocation.getArguments()[0];
+        }
+
+        private ConsumerRecords<String, String> poll(final MethodInvocation invocation) throws Throwable {
+            if (lastHanded > 0) {
+                groupLimit.adjust((System.nanoTime() - lastPollReturnedNanos) / 1_000_000.0 / lastHanded);
+            }
+            // Do not wait for new records while there are held back records to hand over.
+            @SuppressWarnings("unchecked")
+            final ConsumerRecords<String, String> polled = deliverableCount() > 0
+                    ? consumer.poll(Duration.ZERO)
+                    : (ConsumerRecords<String, String>) invocation.proceed();
+            releaseUnassigned();
+            final ConsumerRecords<String, String> records = limit(polled, deliverableCount());
+            lastPollReturnedNanos = System.nanoTime();
+            lastHanded = records.count();
+            return records;
+        }
+
+        private ConsumerRecords<String, String> limit(final ConsumerRecords<String, String> polled, final int previouslyDeliverable) {
+            final int max = groupLimit.limit.get();
+            if (deferred.isEmpty() && polled.count() <= max) {
+                return polled;
+            }
+            polled.partitions().forEach(partition -> deferred.computeIfAbsent(partition, p -> new ArrayDeque<>()).addAll(polled.records(partition)));
+
+            final Map<TopicPartition, List<ConsumerRecord<String, String>>> handed = new LinkedHashMap<>();
+            int remaining = max;
+            final Iterator<Map.Entry<TopicPartition, Deque<ConsumerRecord<String, String>>>> entries = deferred.entrySet().iterator();
+            while (remaining > 0 && entries.hasNext()) {
+                final Map.Entry<TopicPartition, Deque<ConsumerRecord<String, String>>> entry = entries.next();
+                if (containerPaused.contains(entry.getKey())) {
+                    continue;
+                }
+                final List<ConsumerRecord<String, String>> partitionRecords = new ArrayList<>();
+                while (remaining > 0 && !entry.getValue().isEmpty()) {
+                    partitionRecords.add(entry.getValue().poll());
+                    remaining--;
+                }
+                handed.put(entry.getKey(), partitionRecords);
+                if (entry.getValue().isEmpty()) {
+                    entries.remove();
+                }
+            }
+            // Records held back earlier are handed over first, so the rest of the handed records came from this poll.
+            final int handedFromPoll = Math.max(0, (max - remaining) - previouslyDeliverable);
+            groupLimit.deferredCounter.increment(polled.count() - handedFromPoll);
+            updateHeld();
+            return new ConsumerRecords<>(handed);
+        }
+
+        /**
+         * Pause the partitions with held back records, so they are not fetched again, and resume the others.
+         */
+        private void updateHeld() {
+            final List<TopicPartition> toPause = deferred.keySet().stream()
+                    .filter(partition -> !held.contains(partition))
+                    .collect(Collectors.toList());
+            final List<TopicPartition> toResume = held.stream()
+                    .filter(partition -> !deferred.containsKey(partition))
+                    .collect(Collectors.toList());
+            if (!toPause.isEmpty()) {
+                held.addAll(toPause);
+                consumer.pause(toPause);
+            }
+            if (!toResume.isEmpty()) {
+                held.removeAll(toResume);
+                consumer.resume(toResume.stream().filter(partition -> !containerPaused.contains(partition)).collect(Collectors.toList()));
+            }
+        }
+
+        /**
+         * Discard the held back records of a partition whose position is changed.
+         */
+        private void release(final TopicPartition partition) {
+            deferred.remove(partition);
+            if (held.remove(partition) && !containerPaused.contains(partition)) {
+                consumer.resume(List.of(partition));
+            }
+        }
+
+        /**
+         * Discard the state of partitions that are no longer assigned, whose records are re-fetched by the new owner.
+         */
+        private void releaseUnassigned() {
+            final Set<TopicPartition> assignment = consumer.assignment();
+            deferred.keySet().retainAll(assignment);
+            held.retainAll(assignment);
+            containerPaused.retainAll(assignment);
+        }
+
+        private int deliverableCount() {
+            return deferred.entrySet().stream()
+                    .filter(entry -> !containerPaused.contains(entry.getKey()))
+                    .mapToInt(entry -> entry.getValue().size())
+                    .sum();
+        }
+    }
+}
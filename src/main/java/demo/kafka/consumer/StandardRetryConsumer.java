@@ -26,21 +26,21 @@ public class StandardRetryConsumer {
 
     @KafkaListener(topics = "demo-standard-retry-topic", groupId = "kafkaStandardRetryConsumerGroup", containerFactory = "kafkaStatefulRetryListenerContainerFactory")
     public void listen(final Message message) {
-        log.debug("Received message [" +counter.get()+ "]: " + message.getPayload());
+        log.debug("Received message [{}]: {}", counter.get(), message.getPayload());
         counter.getAndIncrement();
         String payload = message.getPayload().toString();
         String requestId = demoRetryService.extractRequestIdFromEventPayload(payload);
         try {
-            demoRetryService.process(payload);
+            demoRetryService.process(payload, message.getHeaders());
             sentState.put(requestId, "SENT");
-            log.debug("Successfully processed message [" +counter.get()+ "]: " + message.getPayload());
+            log.debug("Successfully processed message [{}]: {}", counter.get(), message.getPayload());
         } catch (Exception e) {
             // a retryable exception is thrown, any thing else is logged and the message is marked as consumed
             if (e instanceof Retryable) {
                 sentState.put(requestId, "RETRYING");
                 throw e;
             }
-            log.error("Error processing message: " + e.getMessage());
+            log.error("Error processing message: {}", e.getMessage());
             sentState.put(requestId, "FAILED");
         }
     }
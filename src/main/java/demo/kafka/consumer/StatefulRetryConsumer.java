@@ -25,17 +25,17 @@ public class StatefulRetryConsumer {
 
     @KafkaListener(topics = "demo-stateful-retry-topic", groupId = "kafkaStatefulRetryConsumerGroup", containerFactory = "kafkaStatefulRetryListenerContainerFactory")
     public void listen(final Message message) {
-        log.debug("Received message [" +counter.get()+ "]: " + message.getPayload());
+        log.debug("Received message [{}]: {}", counter.get(), message.getPayload());
         counter.getAndIncrement();
         String id = message.getPayload().toString();
         try {
-            demoRetryService.process(id);
+            demoRetryService.process(id, message.getHeaders());
         } catch (Exception e) {
             // a retryable exception is thrown, any thing else is logged and the message is marked as consumed
             if (e instanceof Retryable) {
                 throw e;
             }
-            log.error("Error processing message: " + e.getMessage());
+            log.error("Error processing message: {}", e.getMessage());
         }
     }
 
@@ -27,16 +27,16 @@ public class StatelessRetryConsumer {
     @KafkaListener(topics = "demo-stateless-retry-topic", groupId = "kafkaStatelessRetryConsumerGroup", containerFactory = "kafkaStatelessRetryListenerContainerFactory")
     public void listen(final Message message) {
         counter.getAndIncrement();
-        log.debug("Received message [" +counter.get()+ "]: " + message.getPayload());
+        log.debug("Received message [{}]: {}", counter.get(), message.getPayload());
         String id = message.getPayload().toString();
         try {
-            demoRetryService.process(id);
+            demoRetryService.process(id, message.getHeaders());
         } catch (Exception e) {
             // a retryable exception is thrown, any thing else is logged and the message is marked as consumed
             if (e instanceof Retryable) {
                 throw e;
             }
-            log.error("Error processing message: " + e.getMessage());
+            log.error("Error processing message: {}", e.getMessage());
         }
     }
 
@@ -0,0 +1,89 @@
+package demo.kafka.logging;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import demo.kafka.properties.KafkaDemoProperties;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Component;
+
+/**
+ * Logs third party and processing failures on the retry path without flooding the logs during an outage.
+ *
+ * Retryable failures are logged at WARN without a stack trace, and are sampled per exception class within a time
+ * window: the first N in the window are logged, then one in every M, each sampled line reporting how many similar
+ * failures were suppressed since the last.  The counts start again with each window, so the start of every outage is
+ * logged.  Non-retryable failures are always logged at ERROR with the stack trace.
+ *
+ * A retryable failure is logged with a constant message followed by the exception, which includes its class and
+ * detail (e.g. the HTTP status), so nothing is formatted or allocated for failures that are suppressed.
+ */
+@Component
+public class RetryLogger {
+
+    private final KafkaDemoProperties.Logging properties;
+    private final Map<Class<?>, Sample> samples = new ConcurrentHashMap<>();
+
+    public RetryLogger(final KafkaDemoProperties properties) {
+        this.properties = properties.getLogging();
+    }
+
+    /**
+     * Log a retryable failure at WARN, if it is sampled.
+     */
+    public void retryable(final Logger log, final Throwable exception, final String message) {
+        if (!log.isWarnEnabled()) {
+            return;
+        }
+        final long suppressed = sample(exception.getClass(), System.currentTimeMillis());
+        if (suppressed == 0) {
+            log.warn("{}: {}", message, exception.toString());
+        } else if (suppressed > 0) {
+            log.warn("{}: {} ({} similar suppressed)", message, exception.toString(), suppressed);
+        }
+    }
+
+    /**
+     * Log a non-retryable failure at ERROR with its stack trace.
+     */
+    public void nonRetryable(final Logger log, final Throwable exception, final String format, final Object... arguments) {
+        if (log.isErrorEnabled()) {
+            // A trailing throwable is logged with its stack trace.
+            final Object[] withException = Arrays.copyOf(arguments, arguments.length + 1);
+            withException[arguments.length] = exception;
+            log.error(format, withException);
+        }
+    }
+
+    /**
+     * Count a failure of the given class, returning -1 if it is suppressed, otherwise the number of failures
+     * suppressed since the last one logged.
+     */
+    long sample(final Class<?> type, final long now) {
+        final Sample sample = samples.computeIfAbsent(type, t -> new Sample());
+        // The first failure in each window is always logged.
+        final long firstN = Math.max(1, properties.getFirstN());
+        final long sampleEvery = Math.max(1, properties.getSampleEvery());
+        synchronized (sample) {
+            if (sample.seen == 0 || now - sample.windowStart >= properties.getWindowMs()) {
+                sample.windowStart = now;
+                sample.seen = 0;
+            }
+            sample.seen++;
+            if (sample.seen > firstN && (sample.seen - firstN) % sampleEvery != 0) {
+                sample.suppressed++;
+                return -1;
+            }
+            final long suppressed = sample.suppressed;
+            sample.suppressed = 0;
+            return suppressed;
+        }
+    }
+
+    private static class Sample {
+        private long windowStart;
+        private long seen;
+        private long suppressed;
+    }
+}
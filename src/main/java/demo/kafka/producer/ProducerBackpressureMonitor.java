@@ -0,0 +1,120 @@
+package demo.kafka.producer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import demo.kafka.properties.KafkaDemoProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pauses consumption when the outbound producer is backing up.
+ *
+ * Each listener thread sends its outbound record synchronously, waiting up to the send timeout, which keeps it within
+ * max.poll.interval.ms.  A send that times out fails its record as retryable, so the record is retried while the
+ * outbound topic is still slow.  This monitor tracks how long the oldest outstanding send has been waiting and pauses
+ * the listener containers once it reaches the pause level, so that no further records are taken on while the producer
+ * is backed up.  A pause only takes effect at the container's next poll.  The containers are resumed once no send has
+ * been waiting longer than the (lower) resume level for the resume period, so that they do not flap between paused and
+ * resumed on every slow send.  Only the containers paused here are resumed.
+ */
+@Slf4j
+@Component
+public class ProducerBackpressureMonitor {
+
+    private final KafkaDemoProperties.Backpressure properties;
+    private final KafkaListenerEndpointRegistry registry;
+    // The start time of the send each listener thread is waiting on.
+    private final Map<Thread, Long> outstandingSends = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "producer-backpressure");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // The containers paused here, which are the only ones resumed here.
+    private final List<MessageListenerContainer> pausedContainers = new ArrayList<>();
+    private volatile boolean paused = false;
+    private long calmSince = -1;
+
+    public ProducerBackpressureMonitor(final KafkaDemoProperties properties, final KafkaListenerEndpointRegistry registry) {
+        this.properties = properties.getProducer().getBackpressure();
+        this.registry = registry;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (properties.isEnabled()) {
+            scheduler.scheduleWithFixedDelay(this::check, properties.getCheckIntervalMs(), properties.getCheckIntervalMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public void sendStarted() {
+        outstandingSends.put(Thread.currentThread(), System.currentTimeMillis());
+    }
+
+    public void sendCompleted() {
+        outstandingSends.remove(Thread.currentThread());
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    void check() {
+        try {
+            final long now = System.currentTimeMillis();
+            final long oldestSendAgeMs = oldestSendAgeMs(now);
+            if (!paused) {
+                if (oldestSendAgeMs >= properties.getPauseSendAgeMs()) {
+                    log.warn("Pausing consumption, oldest outstanding send has been waiting {}ms", oldestSendAgeMs);
+                    registry.getListenerContainers().stream()
+                            .filter(container -> !container.isPauseRequested())
+                            .forEach(container -> {
+                                container.pause();
+                                pausedContainers.add(container);
+                            });
+                    paused = true;
+                    calmSince = -1;
+                }
+            } else if (oldestSendAgeMs > properties.getResumeSendAgeMs()) {
+                calmSince = -1;
+            } else {
+                if (calmSince < 0) {
+                    calmSince = now;
+                }
+                if (now - calmSince >= properties.getResumeAfterMs()) {
+                    log.info("Resuming consumption, no send waiting longer than {}ms for {}ms", properties.getResumeSendAgeMs(), now - calmSince);
+                    pausedContainers.forEach(MessageListenerContainer::resume);
+                    pausedContainers.clear();
+                    paused = false;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to check producer backpressure: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * How long the oldest outstanding send has been waiting, or 0 if there are none.
+     */
+    private long oldestSendAgeMs(final long now) {
+        return outstandingSends.values().stream()
+                .mapToLong(started -> now - started)
+                .max()
+                .orElse(0);
+    }
+}
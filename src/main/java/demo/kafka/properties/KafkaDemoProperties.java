@@ -22,4 +22,179 @@ public class KafkaDemoProperties {
 
     // A unique Id for this instance of the service.
     @NotNull private UUID instanceId = UUID.randomUUID();
+
+    @NotNull private Tracing tracing = new Tracing();
+
+    @NotNull private Retry retry = new Retry();
+
+    @NotNull private Startup startup = new Startup();
+
+    @NotNull private Rebalance rebalance = new Rebalance();
+
+    @NotNull private Producer producer = new Producer();
+
+    @NotNull private Poll poll = new Poll();
+
+    @NotNull private Hedging hedging = new Hedging();
+
+    @NotNull private Backlog backlog = new Backlog();
+
+    @NotNull private Logging logging = new Logging();
+
+    @Getter
+    @Setter
+    public static class Logging {
+        // Retryable failures of each exception class that are all logged in each window, before only one in every
+        // sampleEvery is.  The counts start again with each window.
+        private long firstN = 10;
+        private long sampleEvery = 100;
+        private long windowMs = 60000;
+    }
+
+    @Getter
+    @Setter
+    public static class Tracing {
+        // Fraction of outbound records (0.0 to 1.0) whose latency breakdown is exported.  0 disables the exporter.
+        private double sampleRate = 0.0;
+    }
+
+    @Getter
+    @Setter
+    public static class Retry {
+        // How stateful retry backs off: sleep the consumer thread, or pause only the failing partition.
+        private BackoffMode backoffMode = BackoffMode.CONSUMER;
+    }
+
+    @Getter
+    @Setter
+    public static class Rebalance {
+        // Also offer the eager RangeAssignor, so that instances can join groups whose members still use it during a
+        // rolling upgrade.  The rebalances stay eager until it is no longer offered.  See the README.
+        private boolean eagerCompatible = true;
+    }
+
+    @Getter
+    @Setter
+    public static class Startup {
+        // Join the consumer groups with a group.instance.id derived from the instanceId, which must then be set
+        // explicitly.  See the README.
+        private boolean staticMembership = false;
+
+        // session.timeout.ms with static membership: a restart taking less than this does not trigger a rebalance.
+        private int sessionTimeoutMs = 60000;
+
+        // Exit as soon as the service is ready, used to measure startup time and to train the AppCDS archive.
+        private boolean exitOnReady = false;
+    }
+
+    @Getter
+    @Setter
+    public static class Backlog {
+        // How long the committed and end offsets fetched for the retrybacklog endpoint are reused, so frequent scrapes
+        // do not add load on the admin client.
+        private long lagCacheTtlMs = 5000;
+        private long adminTimeoutMs = 5000;
+    }
+
+    @Getter
+    @Setter
+    public static class Hedging {
+        // Send a second identical third party request if the first is slow, using whichever answers first.
+        private boolean enabled = false;
+
+        // Latency percentile (0.0 to 1.0) of recent requests after which the hedge is sent, but not before minDelayMs.
+        private double percentile = 0.95;
+        private long minDelayMs = 10;
+
+        // Requests needed before the percentile is trusted.  No hedges are sent until then.
+        private int minSamples = 20;
+
+        // Maximum extra load from hedges, as a fraction of requests.
+        private double budget = 0.1;
+    }
+
+    @Getter
+    @Setter
+    public static class Poll {
+        // Adapt the records handed to the listener per poll to the observed processing time.  When disabled the
+        // consumer's own max.poll.records applies.
+        private boolean adaptive = false;
+
+        // Bounds on the records per poll.  The consumer's max.poll.records is set to maxRecords.
+        private int minRecords = 1;
+        private int maxRecords = 500;
+        private int initialRecords = 100;
+
+        // Fraction of max.poll.interval.ms that a batch should take to process.
+        private double targetUtilisation = 0.5;
+
+        // Weight (0.0 to 1.0) of the latest measurement in the moving average of the processing time per record.
+        private double smoothing = 0.3;
+    }
+
+    @Getter
+    @Setter
+    public static class Producer {
+        // Batching profile for the outbound producer.  The individual settings below override the profile when set.
+        private ProducerProfile profile = ProducerProfile.DEFAULT;
+        private Integer lingerMs;
+        private Integer batchSize;
+        private String compressionType;
+
+        // How long the listener waits for an outbound send (including max.block.ms) before failing the record as
+        // retryable.  Must be below max.poll.interval.ms.
+        private long sendTimeoutMs = 5000;
+
+        @NotNull private Backpressure backpressure = new Backpressure();
+
+        public int resolveLingerMs() {
+            return lingerMs != null ? lingerMs : profile.getLingerMs();
+        }
+
+        public int resolveBatchSize() {
+            return batchSize != null ? batchSize : profile.getBatchSize();
+        }
+
+        public String resolveCompressionType() {
+            return compressionType != null ? compressionType : profile.getCompressionType();
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Backpressure {
+        // Pause the listener containers while outbound sends are backing up, so no further records are taken on until
+        // they recover.  Sends are bounded by sendTimeoutMs either way.
+        private boolean enabled = false;
+        private long checkIntervalMs = 100;
+
+        // Pause when a send has been waiting for pauseSendAgeMs, which should be below the producer's sendTimeoutMs.
+        // Resume once no send has been waiting longer than resumeSendAgeMs for resumeAfterMs.
+        private long pauseSendAgeMs = 2000;
+        private long resumeSendAgeMs = 1000;
+        private long resumeAfterMs = 5000;
+    }
+
+    @Getter
+    public enum ProducerProfile {
+        // The Kafka producer defaults: send immediately, no compression.
+        DEFAULT(0, 16384, "none"),
+        BALANCED(5, 65536, "snappy"),
+        THROUGHPUT(20, 262144, "lz4");
+
+        private final int lingerMs;
+        private final int batchSize;
+        private final String compressionType;
+
+        ProducerProfile(int lingerMs, int batchSize, String compressionType) {
+            this.lingerMs = lingerMs;
+            this.batchSize = batchSize;
+            this.compressionType = compressionType;
+        }
+    }
+
+    public enum BackoffMode {
+        CONSUMER,
+        PARTITION
+    }
 }
@@ -0,0 +1,125 @@
+package demo.kafka.retry;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.listener.ContainerAwareErrorHandler;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.util.backoff.BackOff;
+import org.springframework.util.backoff.BackOffExecution;
+
+/**
+ * A stateful retry error handler that backs off by pausing only the partition of the failed record.
+ *
+ * The SeekToCurrentErrorHandler sleeps the consumer thread for the backoff, which stalls every partition assigned to
+ * the consumer.  Instead this handler seeks the failed partition back to the failed record and pauses it, while the
+ * other partitions are seeked back to their unprocessed records and continue to be polled.  When the backoff delay
+ * expires the partition is resumed and the failed record is re-delivered from the broker.
+ *
+ * Once the backoff is exhausted the record is passed to the recoverer and processing moves on.
+ */
+@Slf4j
+public class PartitionPausingErrorHandler implements ContainerAwareErrorHandler {
+
+    private final BiConsumer<ConsumerRecord<?, ?>, Exception> recoverer;
+    private final BackOff backOff;
+    private final Map<TopicPartition, FailedRecord> failures = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "partition-backoff-resume");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PartitionPausingErrorHandler(final BiConsumer<ConsumerRecord<?, ?>, Exception> recoverer, final BackOff backOff) {
+        this.recoverer = recoverer;
+        this.backOff = backOff;
+    }
+
+    @Override
+    public void handle(final Exception thrownException, final List<ConsumerRecord<?, ?>> records, final Consumer<?, ?> consumer, final MessageListenerContainer container) {
+        if (records == null || records.isEmpty()) {
+            // A consumer-level exception, not raised by the listener, so there is no record to retry.
+            log.error("Consumer exception", thrownException);
+            return;
+        }
+        final ConsumerRecord<?, ?> failed = records.get(0);
+        final TopicPartition failedPartition = new TopicPartition(failed.topic(), failed.partition());
+
+        FailedRecord failedRecord = failures.get(failedPartition);
+        if (failedRecord == null || failedRecord.offset != failed.offset()) {
+            failedRecord = new FailedRecord(failed.offset(), backOff.start());
+            failures.put(failedPartition, failedRecord);
+        }
+        final long delay = failedRecord.backOffExecution.nextBackOff();
+
+        if (delay == BackOffExecution.STOP) {
+            failures.remove(failedPartition);
+            recoverer.accept(failed, thrownException);
+            // The recovered record is committed by the container, so only the records after it are re-delivered.
+            seekToFirstUnprocessed(records.subList(1, records.size()), consumer);
+            return;
+        }
+
+        log.debug("Pausing partition {} for {}ms before retrying offset {}", failedPartition, delay, failed.offset());
+        container.pausePartition(failedPartition);
+        seekToFirstUnprocessed(records, consumer);
+        failedRecord.container = container;
+        failedRecord.resume = scheduler.schedule(() -> {
+            log.debug("Resuming partition {}", failedPartition);
+            container.resumePartition(failedPartition);
+        }, delay, TimeUnit.MILLISECONDS);
+
+        throw new KafkaException("Partition " + failedPartition + " paused for retry after exception", KafkaException.Level.DEBUG, thrownException);
+    }
+
+    /**
+     * Discard the retry state for partitions that are no longer assigned to this consumer.
+     *
+     * A pending resume is cancelled and the container's pause request withdrawn, so that the partition is not paused
+     * if it is assigned back to this consumer later.
+     */
+    public void clearPartitions(final Collection<TopicPartition> partitions) {
+        partitions.forEach(partition -> {
+            final FailedRecord failedRecord = failures.remove(partition);
+            if (failedRecord != null && failedRecord.resume != null && failedRecord.resume.cancel(false)) {
+                failedRecord.container.resumePartition(partition);
+            }
+        });
+    }
+
+    @Override
+    public boolean isAckAfterHandle() {
+        return true;
+    }
+
+    private static void seekToFirstUnprocessed(final List<ConsumerRecord<?, ?>> records, final Consumer<?, ?> consumer) {
+        final Map<TopicPartition, Long> seeks = new LinkedHashMap<>();
+        records.forEach(record -> seeks.putIfAbsent(new TopicPartition(record.topic(), record.partition()), record.offset()));
+        seeks.forEach(consumer::seek);
+    }
+
+    private static class FailedRecord {
+        private final long offset;
+        private final BackOffExecution backOffExecution;
+        private volatile MessageListenerContainer container;
+        private volatile ScheduledFuture<?> resume;
+
+        private FailedRecord(long offset, BackOffExecution backOffExecution) {
+            this.offset = offset;
+            this.backOffExecution = backOffExecution;
+        }
+    }
+}
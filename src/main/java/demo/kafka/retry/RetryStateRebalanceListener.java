@@ -0,0 +1,58 @@
+package demo.kafka.retry;
+
+import java.util.Collection;
+
+import demo.kafka.tracing.LatencyTracker;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.GenericErrorHandler;
+
+/**
+ * Discards the pending retry state for partitions that are taken away from this consumer in a rebalance.
+ *
+ * With the cooperative sticky assignor only the partitions that actually move are revoked, so the retry state of the
+ * partitions this consumer keeps is left untouched and their processing continues through the rebalance.
+ *
+ * There is no in-flight work to flush: the listener runs on the consumer thread, so no record is being processed while
+ * the rebalance callbacks run, and the offsets of the completed records on the revoked partitions have already been
+ * committed by the container.  A record that is backing off on a revoked partition is re-delivered to its new owner
+ * from the committed offset, and its pending resume and pause request are cancelled here.
+ *
+ * The number of revoked partitions is recorded per consumer group in the kafkademo.rebalance.revoked counter.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class RetryStateRebalanceListener implements ConsumerAwareRebalanceListener {
+
+    private final LatencyTracker latencyTracker;
+    private final GenericErrorHandler<?> errorHandler;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public void onPartitionsRevokedAfterCommit(final Consumer<?, ?> consumer, final Collection<TopicPartition> partitions) {
+        discardRetryState(consumer, partitions);
+    }
+
+    @Override
+    public void onPartitionsLost(final Consumer<?, ?> consumer, final Collection<TopicPartition> partitions) {
+        discardRetryState(consumer, partitions);
+    }
+
+    private void discardRetryState(final Consumer<?, ?> consumer, final Collection<TopicPartition> partitions) {
+        if (partitions.isEmpty()) {
+            return;
+        }
+        final String groupId = consumer.groupMetadata().groupId();
+        log.info("Partitions revoked from group {}: {}", groupId, partitions);
+        meterRegistry.counter("kafkademo.rebalance.revoked", "group", groupId).increment(partitions.size());
+
+        latencyTracker.discardPartitions(partitions);
+        if (errorHandler instanceof PartitionPausingErrorHandler) {
+            ((PartitionPausingErrorHandler) errorHandler).clearPartitions(partitions);
+        }
+    }
+}
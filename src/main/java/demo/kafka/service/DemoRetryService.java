@@ -1,10 +1,19 @@
 package demo.kafka.service;
 
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import demo.kafka.exception.KafkaDemoException;
 import demo.kafka.exception.KafkaDemoRetriableException;
+import demo.kafka.exception.Retryable;
+import demo.kafka.logging.RetryLogger;
+import demo.kafka.producer.ProducerBackpressureMonitor;
 import demo.kafka.properties.KafkaDemoProperties;
+import demo.kafka.tracing.LatencyExporter;
+import demo.kafka.tracing.LatencyTrace;
+import demo.kafka.tracing.LatencyTracker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.producer.ProducerRecord;
@@ -12,7 +21,9 @@ import org.apache.kafka.clients.producer.RecordMetadata;
 import org.springframework.http.ResponseEntity;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.stereotype.Service;
+import org.springframework.util.concurrent.ListenableFuture;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
@@ -24,10 +35,31 @@ public class DemoRetryService {
     private final String REQUEST_ID_PREFIX_STRING = "requestId: ";
     private final KafkaDemoProperties properties;
     private final KafkaTemplate kafkaTemplate;
+    private final LatencyTracker latencyTracker;
+    private final LatencyExporter latencyExporter;
+    private final ProducerBackpressureMonitor backpressureMonitor;
+    private final HedgedRequestExecutor hedgedRequestExecutor;
+    private final RetryLogger retryLogger;
 
-    public void process(String payload) {
-        callThirdparty(payload);
-        sendMessage(payload);
+    /**
+     * Process the payload of a consumed message, using its headers to trace the latency of the record.
+     */
+    public void process(String payload, MessageHeaders headers) {
+        final LatencyTrace trace = latencyTracker.start(headers);
+        boolean complete = false;
+        try {
+            final long thirdpartyStart = System.currentTimeMillis();
+            callThirdparty(payload);
+            trace.recordThirdpartyDuration(System.currentTimeMillis() - thirdpartyStart);
+            sendMessage(payload, trace);
+            complete = true;
+        } catch (RuntimeException e) {
+            // Only a retryable failure leaves the record to be attempted again.
+            complete = !(e instanceof Retryable);
+            throw e;
+        } finally {
+            latencyTracker.attemptEnded(trace, complete);
+        }
     }
 
     public String extractRequestIdFromEventPayload(String payload) {
@@ -35,43 +67,83 @@ public class DemoRetryService {
     }
 
     private void callThirdparty(String payload) {
-        RestTemplate restTemplate = new RestTemplate();
         try {
             String requestId = extractRequestIdFromEventPayload(payload);
-            ResponseEntity<String> response = restTemplate.getForEntity(properties.getThirdpartyEndpoint() + "/" + requestId, String.class);
+            String url = properties.getThirdpartyEndpoint() + "/" + requestId;
+            ResponseEntity<String> response = properties.getHedging().isEnabled()
+                    ? hedgedRequestExecutor.getForEntity(url)
+                    : new RestTemplate().getForEntity(url, String.class);
             if (response.getStatusCodeValue() != 200) {
                 throw new RuntimeException("error " + response.getStatusCodeValue());
             }
             return;
 
         } catch (HttpServerErrorException e) { // HttpServerErrorException – in case of HTTP status 5xx
-            log.error("Error calling thirdparty api, returned an (" + e.getClass().getName() + ") with an error code of " + e.getRawStatusCode(), e);   // e.getRawStatusCode()
+            retryLogger.retryable(log, e, "Error calling thirdparty api");
             throw new KafkaDemoRetriableException(e);
         } catch (ResourceAccessException e) { // ResourceAccessException – in case of resource access exceptions
-            log.error("Error calling thirdparty api, returned an (" + e.getClass().getName() + ")", e);
+            retryLogger.retryable(log, e, "Error calling thirdparty api");
             throw new KafkaDemoRetriableException(e);
         } catch (Exception e) {
-            log.error("Error calling thirdparty api, returned an (" + e.getClass().getName() + ")", e);
+            retryLogger.nonRetryable(log, e, "Error calling thirdparty api, returned an ({})", e.getClass().getName());
             throw new KafkaDemoException(e);
         }
     }
 
-    private SendResult sendMessage(String originalPayload) {
-        try {
-            String payload = "eventId: " + UUID.randomUUID() + ", instanceId: "+properties.getInstanceId()+", payload: " + originalPayload;
-            final ProducerRecord<String, String> record =
-                    new ProducerRecord<>(properties.getOutboundTopic(), payload);
+    private SendResult sendMessage(String originalPayload, LatencyTrace trace) {
+        String payload = "eventId: " + UUID.randomUUID() + ", instanceId: "+properties.getInstanceId()+", payload: " + originalPayload;
+        final ProducerRecord<String, String> record =
+                new ProducerRecord<>(properties.getOutboundTopic(), payload);
+        trace.writeTo(record.headers());
 
-            final SendResult result = (SendResult) kafkaTemplate.send(record).get();
-            final RecordMetadata metadata = result.getRecordMetadata();
+        final SendResult result;
+        try {
+            final long sendStart = System.currentTimeMillis();
+            backpressureMonitor.sendStarted();
+            try {
+                // Bound the wait on the outbound topic, so a slow broker cannot hold the listener thread past
+                // max.poll.interval.ms.  The time spent blocked in send() counts towards the bound.
+                final ListenableFuture future = kafkaTemplate.send(record);
+                final long remainingMs = properties.getProducer().getSendTimeoutMs() - (System.currentTimeMillis() - sendStart);
+                result = (SendResult) future.get(Math.max(0, remainingMs), TimeUnit.MILLISECONDS);
+            } finally {
+                backpressureMonitor.sendCompleted();
+            }
+        } catch (TimeoutException e) {
+            retryLogger.retryable(log, e, "Timed out sending message to the outbound topic");
+            throw new KafkaDemoRetriableException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof org.apache.kafka.common.errors.TimeoutException) {
+                // The producer's own max.block.ms or delivery.timeout.ms expired.
+                retryLogger.retryable(log, e.getCause(), "Timed out sending message to the outbound topic");
+                throw new KafkaDemoRetriableException(e.getCause());
+            }
+            retryLogger.nonRetryable(log, e, "Error sending message to topic {}", properties.getOutboundTopic());
+            throw new KafkaDemoException(e);
+        } catch (Exception e) {
+            retryLogger.nonRetryable(log, e, "Error sending message to topic {}", properties.getOutboundTopic());
+            throw new KafkaDemoException(e);
+        }
+        final RecordMetadata metadata = result.getRecordMetadata();
+        log.debug("Sent record(key={} value={}) meta(topic={}, partition={}, offset={})",
+                record.key(), record.value(), metadata.topic(), metadata.partition(), metadata.offset());
 
-            log.debug(String.format("Sent record(key=%s value=%s) meta(topic=%s, partition=%d, offset=%d)",
-                    record.key(), record.value(), metadata.topic(), metadata.partition(), metadata.offset()));
+        exportLatency(record);
+        return result;
+    }
 
-            return result;
+    /**
+     * Export the latency breakdown of a sent record, if sampled.  The record has been sent by now, so a failure to
+     * export is only logged and does not fail the record.
+     */
+    private void exportLatency(final ProducerRecord<String, String> record) {
+        if (!latencyExporter.isSampled()) {
+            return;
+        }
+        try {
+            latencyExporter.export(record.headers(), System.currentTimeMillis());
         } catch (Exception e) {
-            log.error("Error sending message to topic " + properties.getOutboundTopic(), e);
-            throw new KafkaDemoException(e);
+            log.warn("Failed to export the latency breakdown: {}", e.toString());
         }
     }
 }
@@ -0,0 +1,258 @@
+package demo.kafka.service;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.PreDestroy;
+
+import demo.kafka.properties.KafkaDemoProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Sends hedged GET requests to cut the tail latency of the third party call.
+ *
+ * If the first request has not answered within the configured percentile of recent request latencies, a second
+ * identical request is sent.  The first successful response is used and the other request is cancelled by closing its
+ * connection.  If both fail, the first failure is thrown.
+ *
+ * Hedges are limited by a budget: each request earns a fraction of a hedge, and a hedge is only sent when a whole one
+ * has been earned, capping the extra load on the third party at that fraction.
+ *
+ * The percentile is computed from the latency of the first request of each call when it succeeds, not from the
+ * hedged latency, which would pull the percentile down and send ever more hedges.  When the hedge wins the first
+ * request is cancelled and the time it had taken so far is used, a lower bound that keeps the slow requests in the
+ * window.
+ */
+@Component
+public class HedgedRequestExecutor {
+
+    private static final int LATENCY_WINDOW_SIZE = 1000;
+    private static final int PERCENTILE_REFRESH_INTERVAL = 50;
+    private static final double MAX_BUDGET = 10;
+
+    private final KafkaDemoProperties.Hedging properties;
+    private final RestTemplate restTemplate;
+    private final ThreadLocal<Attempt> currentAttempt = new ThreadLocal<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "hedged-request");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+    private final Counter hedgesOverBudget;
+
+    private final long[] latencies = new long[LATENCY_WINDOW_SIZE];
+    private int latencyCount;
+    private long hedgeDelayMs = -1;
+    private double budget;
+
+    public HedgedRequestExecutor(final KafkaDemoProperties properties, final MeterRegistry meterRegistry) {
+        this.properties = properties.getHedging();
+        this.restTemplate = new RestTemplate(new SimpleClientHttpRequestFactory() {
+            @Override
+            protected void prepareConnection(final HttpURLConnection connection, final String httpMethod) throws IOException {
+                super.prepareConnection(connection, httpMethod);
+                final Attempt attempt = currentAttempt.get();
+                if (attempt != null) {
+                    if (attempt.cancelled) {
+                        throw new IOException("Hedged request cancelled");
+                    }
+                    attempt.connection = connection;
+                }
+            }
+        });
+        this.hedgesSent = meterRegistry.counter("kafkademo.hedging.requests", "outcome", "sent");
+        this.hedgesWon = meterRegistry.counter("kafkademo.hedging.requests", "outcome", "won");
+        this.hedgesOverBudget = meterRegistry.counter("kafkademo.hedging.requests", "outcome", "over_budget");
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public ResponseEntity<String> getForEntity(final String url) {
+        final HedgedRequest request = new HedgedRequest();
+        final Attempt primary = send(url, request);
+        Attempt hedge = null;
+        try {
+            final long delay = hedgeDelayMs();
+            if (delay >= 0) {
+                try {
+                    return request.result.get(delay, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    hedge = hedge(url, request);
+                }
+            }
+            final ResponseEntity<String> response = request.result.get();
+            if (hedge != null && request.winner == hedge) {
+                hedgesWon.increment();
+            }
+            return response;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            recordRequest(primaryLatencyMs(primary, request));
+            // Only cancel the attempts still running: disconnecting a completed one would evict its pooled connection.
+            primary.cancelIfRunning();
+            if (hedge != null) {
+                hedge.cancelIfRunning();
+            }
+        }
+    }
+
+    /**
+     * The latency of the first request, or -1 if it failed.
+     */
+    private static long primaryLatencyMs(final Attempt primary, final HedgedRequest request) {
+        if (primary.completed) {
+            return primary.latencyMs;
+        }
+        // Still running, so the hedge won and the first request is about to be cancelled.
+        return request.winner != null ? primary.elapsedMs() : -1;
+    }
+
+    /**
+     * Send the hedge, if the request is still outstanding and the budget allows, or return null.
+     *
+     * Runs under the request's lock, so the first request cannot fail the whole request between the check and the
+     * hedge being counted as pending.
+     */
+    private Attempt hedge(final String url, final HedgedRequest request) {
+        synchronized (request) {
+            if (request.result.isDone()) {
+                return null;
+            }
+            if (!tryAcquireHedge()) {
+                hedgesOverBudget.increment();
+                return null;
+            }
+            hedgesSent.increment();
+            return send(url, request);
+        }
+    }
+
+    private Attempt send(final String url, final HedgedRequest request) {
+        final Attempt attempt = new Attempt();
+        request.started();
+        CompletableFuture.supplyAsync(() -> {
+            currentAttempt.set(attempt);
+            try {
+                return restTemplate.getForEntity(url, String.class);
+            } finally {
+                currentAttempt.remove();
+            }
+        }, executor).whenComplete((response, exception) -> request.completed(attempt, response, exception));
+        return attempt;
+    }
+
+    /**
+     * The hedge delay, or -1 if there are too few latency samples to base it on yet.
+     */
+    private synchronized long hedgeDelayMs() {
+        return hedgeDelayMs;
+    }
+
+    /**
+     * Earn the hedge budget of a request, and add the latency of its first attempt to the window unless it is -1.
+     */
+    private synchronized void recordRequest(final long latencyMs) {
+        budget = Math.min(MAX_BUDGET, budget + properties.getBudget());
+        if (latencyMs < 0) {
+            return;
+        }
+        latencies[latencyCount % LATENCY_WINDOW_SIZE] = latencyMs;
+        latencyCount++;
+        if (latencyCount >= properties.getMinSamples() && latencyCount % PERCENTILE_REFRESH_INTERVAL == 0
+                || latencyCount == properties.getMinSamples()) {
+            final long[] window = Arrays.copyOf(latencies, Math.min(latencyCount, LATENCY_WINDOW_SIZE));
+            Arrays.sort(window);
+            final long percentileMs = window[(int) Math.min(window.length - 1, Math.ceil(properties.getPercentile() * window.length) - 1)];
+            hedgeDelayMs = Math.max(properties.getMinDelayMs(), percentileMs);
+        }
+    }
+
+    private synchronized boolean tryAcquireHedge() {
+        if (budget >= 1) {
+            budget--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The outcome of a request and its hedge: the first successful response, or the first failure once every attempt
+     * has failed.
+     */
+    private static class HedgedRequest {
+        private final CompletableFuture<ResponseEntity<String>> result = new CompletableFuture<>();
+        private int pending;
+        private Throwable firstFailure;
+        private volatile Attempt winner;
+
+        private synchronized void started() {
+            pending++;
+        }
+
+        private synchronized void completed(final Attempt attempt, final ResponseEntity<String> response, final Throwable exception) {
+            attempt.latencyMs = exception == null ? attempt.elapsedMs() : -1;
+            attempt.completed = true;
+            if (exception == null) {
+                if (!result.isDone()) {
+                    winner = attempt;
+                    result.complete(response);
+                }
+                return;
+            }
+            if (firstFailure == null) {
+                firstFailure = exception instanceof CompletionException && exception.getCause() != null ? exception.getCause() : exception;
+            }
+            if (--pending == 0) {
+                result.completeExceptionally(firstFailure);
+            }
+        }
+    }
+
+    /**
+     * A single request, which can be cancelled by closing its connection.
+     */
+    private static class Attempt {
+        private final long startNanos = System.nanoTime();
+        private volatile HttpURLConnection connection;
+        private volatile boolean cancelled;
+        private volatile boolean completed;
+        // The latency of a successful request, or -1 if it failed.
+        private volatile long latencyMs = -1;
+
+        private long elapsedMs() {
+            return (System.nanoTime() - startNanos) / 1_000_000;
+        }
+
+        private void cancelIfRunning() {
+            if (completed) {
+                return;
+            }
+            cancelled = true;
+            final HttpURLConnection current = connection;
+            if (current != null) {
+                current.disconnect();
+            }
+        }
+    }
+}
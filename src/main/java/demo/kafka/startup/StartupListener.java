@@ -0,0 +1,33 @@
+package demo.kafka.startup;
+
+import java.lang.management.ManagementFactory;
+
+import demo.kafka.properties.KafkaDemoProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports how long the service took to become ready, measured from JVM start.
+ *
+ * When kafkademo.startup.exitOnReady is set the service exits as soon as it is ready.  This is used by the build to
+ * measure startup time, and by the Dockerfile for the training run that produces the AppCDS archive.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class StartupListener implements ApplicationListener<ApplicationReadyEvent> {
+
+    private final KafkaDemoProperties properties;
+
+    @Override
+    public void onApplicationEvent(final ApplicationReadyEvent event) {
+        log.info("Service ready in {}ms from JVM start", ManagementFactory.getRuntimeMXBean().getUptime());
+        if (properties.getStartup().isExitOnReady()) {
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+}
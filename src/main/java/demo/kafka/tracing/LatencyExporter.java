@@ -0,0 +1,85 @@
+package demo.kafka.tracing;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import demo.kafka.properties.KafkaDemoProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.stereotype.Component;
+
+import static demo.kafka.tracing.LatencyTrace.ATTEMPT_COUNT_HEADER;
+import static demo.kafka.tracing.LatencyTrace.BACKOFF_MS_HEADER;
+import static demo.kafka.tracing.LatencyTrace.QUEUE_MS_HEADER;
+import static demo.kafka.tracing.LatencyTrace.SEND_TIME_HEADER;
+import static demo.kafka.tracing.LatencyTrace.SOURCE_TIMESTAMP_HEADER;
+import static demo.kafka.tracing.LatencyTrace.THIRDPARTY_MS_HEADER;
+import static demo.kafka.tracing.LatencyTrace.readHeader;
+
+/**
+ * Exports a latency breakdown for a sample of outbound records, built from the timing headers on the record.
+ *
+ * The sampling decision is a single random draw, so unsampled records pay no header parsing or metric cost.
+ */
+@Slf4j
+@Component
+public class LatencyExporter {
+
+    private final double sampleRate;
+    private final Timer queueTimer;
+    private final Timer backoffTimer;
+    private final Timer thirdpartyTimer;
+    private final Timer sendTimer;
+    private final Timer totalTimer;
+
+    public LatencyExporter(final KafkaDemoProperties properties, final MeterRegistry meterRegistry) {
+        this.sampleRate = properties.getTracing().getSampleRate();
+        this.queueTimer = stageTimer(meterRegistry, "queue");
+        this.backoffTimer = stageTimer(meterRegistry, "backoff");
+        this.thirdpartyTimer = stageTimer(meterRegistry, "thirdparty");
+        this.sendTimer = stageTimer(meterRegistry, "send");
+        this.totalTimer = stageTimer(meterRegistry, "total");
+    }
+
+    public boolean isSampled() {
+        return sampleRate > 0 && (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * Export the breakdown for a record that has been acknowledged by the broker at the given time.
+     */
+    public void export(final Headers headers, final long acknowledgedTime) {
+        final long sourceTimestamp = readHeader(headers, SOURCE_TIMESTAMP_HEADER);
+        final long queueMs = readHeader(headers, QUEUE_MS_HEADER);
+        final long backoffMs = readHeader(headers, BACKOFF_MS_HEADER);
+        final long thirdpartyMs = readHeader(headers, THIRDPARTY_MS_HEADER);
+        final long sendMs = acknowledgedTime - readHeader(headers, SEND_TIME_HEADER);
+        final long totalMs = sourceTimestamp > 0 ? acknowledgedTime - sourceTimestamp : -1;
+
+        record(queueTimer, queueMs);
+        record(backoffTimer, backoffMs);
+        record(thirdpartyTimer, thirdpartyMs);
+        record(sendTimer, sendMs);
+        record(totalTimer, totalMs);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Latency breakdown: attempts={} queueMs={} backoffMs={} thirdpartyMs={} sendMs={} totalMs={}",
+                    readHeader(headers, ATTEMPT_COUNT_HEADER), queueMs, backoffMs, thirdpartyMs, sendMs, totalMs);
+        }
+    }
+
+    private static Timer stageTimer(final MeterRegistry meterRegistry, final String stage) {
+        return Timer.builder("kafkademo.latency")
+                .tag("stage", stage)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    private static void record(final Timer timer, final long durationMs) {
+        if (durationMs >= 0) {
+            timer.record(durationMs, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package demo.kafka.tracing;
+
+import java.nio.charset.StandardCharsets;
+
+import lombok.Getter;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+/**
+ * Timing for a single processing attempt of a consumed record.
+ *
+ * The values are written as headers on the outbound record so the latency of a record can be broken down into
+ * broker queueing, retry backoff, the third party call and the outbound send.
+ */
+@Getter
+public class LatencyTrace {
+
+    public static final String SOURCE_TIMESTAMP_HEADER = "demo-source-timestamp";
+    public static final String FIRST_ATTEMPT_TIME_HEADER = "demo-first-attempt-time";
+    public static final String ATTEMPT_COUNT_HEADER = "demo-attempt-count";
+    public static final String QUEUE_MS_HEADER = "demo-queue-ms";
+    public static final String BACKOFF_MS_HEADER = "demo-backoff-ms";
+    public static final String THIRDPARTY_MS_HEADER = "demo-thirdparty-ms";
+    public static final String SEND_TIME_HEADER = "demo-send-time";
+
+    private final String key;
+    private final long sourceTimestamp;
+    private final long firstAttemptTime;
+    private final int attemptCount;
+    private final long attemptStartTime;
+    private final long backoffMs;
+    private long thirdpartyMs;
+
+    LatencyTrace(String key, long sourceTimestamp, long firstAttemptTime, int attemptCount, long attemptStartTime, long backoffMs) {
+        this.key = key;
+        this.sourceTimestamp = sourceTimestamp;
+        this.firstAttemptTime = firstAttemptTime;
+        this.attemptCount = attemptCount;
+        this.attemptStartTime = attemptStartTime;
+        this.backoffMs = backoffMs;
+    }
+
+    /**
+     * Time the record spent on the broker before its first processing attempt.
+     */
+    public long getQueueMs() {
+        return sourceTimestamp > 0 ? Math.max(0, firstAttemptTime - sourceTimestamp) : 0;
+    }
+
+    public void recordThirdpartyDuration(long durationMs) {
+        this.thirdpartyMs = durationMs;
+    }
+
+    /**
+     * Add the timing headers to the outbound record headers, stamping the time of the send.
+     */
+    public void writeTo(Headers headers) {
+        add(headers, SOURCE_TIMESTAMP_HEADER, sourceTimestamp);
+        add(headers, FIRST_ATTEMPT_TIME_HEADER, firstAttemptTime);
+        add(headers, ATTEMPT_COUNT_HEADER, attemptCount);
+        add(headers, QUEUE_MS_HEADER, getQueueMs());
+        add(headers, BACKOFF_MS_HEADER, backoffMs);
+        add(headers, THIRDPARTY_MS_HEADER, thirdpartyMs);
+        add(headers, SEND_TIME_HEADER, System.currentTimeMillis());
+    }
+
+    /**
+     * Read a timing header written by {@link #writeTo(Headers)}, returning -1 if it is absent.
+     */
+    public static long readHeader(Headers headers, String name) {
+        final Header header = headers.lastHeader(name);
+        if (header == null || header.value() == null) {
+            return -1;
+        }
+        return Long.parseLong(new String(header.value(), StandardCharsets.UTF_8));
+    }
+
+    private static void add(Headers headers, String name, long value) {
+        headers.remove(name);
+        headers.add(name, String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+    }
+}
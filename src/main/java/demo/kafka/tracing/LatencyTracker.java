@@ -0,0 +1,142 @@
+package demo.kafka.tracing;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.kafka.common.TopicPartition;
+
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tracks the processing attempts of each consumed record so that the first attempt time, attempt count and time
+ * spent in retry backoff survive both stateless retry (re-invoked within the poll) and stateful retry (re-delivered
+ * from the broker).
+ *
+ * Records are keyed by topic, partition and offset.  Entries are removed once the record completes or its retries
+ * are exhausted, and the map is bounded so that records which are never completed cannot leak.
+ *
+ * The records that have failed an attempt and are waiting to be retried are reported per partition as the retry
+ * backlog.
+ */
+@Component
+public class LatencyTracker {
+
+    private static final int MAX_TRACKED_RECORDS = 10000;
+
+    private final Map<String, Attempts> inFlight = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Attempts> eldest) {
+            return size() > MAX_TRACKED_RECORDS;
+        }
+    };
+
+    /**
+     * Start a processing attempt for the record described by the given message headers.
+     */
+    public LatencyTrace start(MessageHeaders headers) {
+        final long now = System.currentTimeMillis();
+        final String topic = headers.get(KafkaHeaders.RECEIVED_TOPIC, String.class);
+        final Integer partition = headers.get(KafkaHeaders.RECEIVED_PARTITION_ID, Integer.class);
+        final String key = key(topic, partition, headers.get(KafkaHeaders.OFFSET));
+        final Long sourceTimestamp = headers.get(KafkaHeaders.RECEIVED_TIMESTAMP, Long.class);
+
+        final Attempts attempts;
+        synchronized (inFlight) {
+            attempts = inFlight.computeIfAbsent(key, k -> new Attempts(topic != null && partition != null ? new TopicPartition(topic, partition) : null, now));
+            attempts.count++;
+        }
+        final long backoffMs = Math.max(0, now - attempts.firstAttemptTime - attempts.busyMs);
+        return new LatencyTrace(key, sourceTimestamp != null ? sourceTimestamp : -1, attempts.firstAttemptTime, attempts.count, now, backoffMs);
+    }
+
+    /**
+     * Mark the end of a processing attempt.  Once the record is complete its tracking state is discarded.
+     */
+    public void attemptEnded(LatencyTrace trace, boolean complete) {
+        synchronized (inFlight) {
+            if (complete) {
+                inFlight.remove(trace.getKey());
+            } else {
+                final Attempts attempts = inFlight.get(trace.getKey());
+                if (attempts != null) {
+                    attempts.busyMs += System.currentTimeMillis() - trace.getAttemptStartTime();
+                    attempts.failed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Discard the tracking state for a record whose retries have been exhausted.
+     */
+    public void discard(String topic, int partition, long offset) {
+        synchronized (inFlight) {
+            inFlight.remove(key(topic, partition, offset));
+        }
+    }
+
+    /**
+     * Discard the tracking state for all records on partitions that have been revoked from this consumer.
+     */
+    public void discardPartitions(Collection<TopicPartition> partitions) {
+        synchronized (inFlight) {
+            inFlight.values().removeIf(attempts -> partitions.contains(attempts.partition));
+        }
+    }
+
+    /**
+     * The records waiting to be retried after a failed attempt, per partition.
+     */
+    public Map<TopicPartition, RetryBacklog> retryBacklog() {
+        final Map<TopicPartition, RetryBacklog> backlog = new HashMap<>();
+        synchronized (inFlight) {
+            inFlight.values().stream()
+                    .filter(attempts -> attempts.failed && attempts.partition != null)
+                    .forEach(attempts -> backlog.computeIfAbsent(attempts.partition, partition -> new RetryBacklog())
+                            .add(attempts.firstAttemptTime));
+        }
+        return backlog;
+    }
+
+    private static String key(Object topic, Object partition, Object offset) {
+        return topic + "-" + partition + "@" + offset;
+    }
+
+    private static class Attempts {
+        private final TopicPartition partition;
+        private final long firstAttemptTime;
+        private int count;
+        private long busyMs;
+        private boolean failed;
+
+        private Attempts(TopicPartition partition, long firstAttemptTime) {
+            this.partition = partition;
+            this.firstAttemptTime = firstAttemptTime;
+        }
+    }
+
+    /**
+     * The number of records in retry on a partition, and when the oldest of them was first attempted.
+     */
+    public static class RetryBacklog {
+        private int records;
+        private long oldestFirstAttemptTime = Long.MAX_VALUE;
+
+        private void add(long firstAttemptTime) {
+            records++;
+            oldestFirstAttemptTime = Math.min(oldestFirstAttemptTime, firstAttemptTime);
+        }
+
+        public int getRecords() {
+            return records;
+        }
+
+        public long getOldestFirstAttemptTime() {
+            return oldestFirstAttemptTime;
+        }
+    }
+}
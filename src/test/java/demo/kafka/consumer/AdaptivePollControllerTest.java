@@ -0,0 +1,163 @@
+package demo.kafka.consumer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import demo.kafka.properties.KafkaDemoProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+public class AdaptivePollControllerTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("demo-topic", 0);
+    private static final long MAX_POLL_INTERVAL_MS = 10000;
+
+    private KafkaDemoProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private MockConsumer<String, String> mockConsumer;
+
+    @BeforeEach
+    public void setUp() {
+        properties = new KafkaDemoProperties();
+        properties.getPoll().setAdaptive(true);
+        meterRegistry = new SimpleMeterRegistry();
+        mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        mockConsumer.assign(List.of(PARTITION));
+        mockConsumer.updateBeginningOffsets(Map.of(PARTITION, 0L));
+    }
+
+    /**
+     * A batch should take half of max.poll.interval.ms (5 seconds), but the limit at most doubles per poll.
+     */
+    @Test
+    public void testLimitFor_GrowsAtMostDoubling() {
+        final AdaptivePollController controller = controller();
+
+        assertThat(controller.limitFor(1, 100), equalTo(200));
+        assertThat(controller.limitFor(20, 200), equalTo(250));
+    }
+
+    @Test
+    public void testLimitFor_ShrinksToTargetImmediately() {
+        final AdaptivePollController controller = controller();
+
+        assertThat(controller.limitFor(100, 400), equalTo(50));
+    }
+
+    @Test
+    public void testLimitFor_WithinBounds() {
+        final AdaptivePollController controller = controller();
+
+        assertThat(controller.limitFor(0, 400), equalTo(500));
+        assertThat(controller.limitFor(1, 400), equalTo(500));
+        assertThat(controller.limitFor(100000, 10), equalTo(1));
+    }
+
+    /**
+     * The records beyond the limit of 3 are held back and handed over by the following polls, with the partition
+     * paused meanwhile so they are not fetched again.  The pause is not visible to the container.
+     */
+    @Test
+    public void testPoll_RecordsBeyondLimitHandedOverByLaterPolls() {
+        final Consumer<String, String> consumer = controller(3).apply(mockConsumer);
+        addRecords(0, 7);
+
+        assertThat(offsets(consumer.poll(Duration.ZERO)), contains(0L, 1L, 2L));
+        assertThat(mockConsumer.paused(), contains(PARTITION));
+        assertThat(consumer.paused(), empty());
+
+        assertThat(offsets(consumer.poll(Duration.ZERO)), contains(3L, 4L, 5L));
+        assertThat(offsets(consumer.poll(Duration.ZERO)), contains(6L));
+        assertThat(mockConsumer.paused(), empty());
+        assertThat(meterRegistry.counter("kafkademo.poll.records.deferred", "group", mockConsumer.groupMetadata().groupId()).count(), equalTo(4.0));
+    }
+
+    /**
+     * A seek, e.g. to retry a failed record, discards the held back records and the partition is fetched again from
+     * the new position.
+     */
+    @Test
+    public void testPoll_SeekDiscardsHeldBackRecords() {
+        final Consumer<String, String> consumer = controller(3).apply(mockConsumer);
+        addRecords(0, 7);
+        assertThat(offsets(consumer.poll(Duration.ZERO)), contains(0L, 1L, 2L));
+
+        consumer.seek(PARTITION, 1);
+        assertThat(mockConsumer.paused(), empty());
+
+        // The broker returns the records from the new position again.
+        addRecords(0, 7);
+        assertThat(offsets(consumer.poll(Duration.ZERO)), contains(1L, 2L, 3L));
+    }
+
+    /**
+     * Held back records of a partition paused by the container are not handed over until it is resumed, and resuming
+     * it does not fetch the partition while it still has held back records.
+     */
+    @Test
+    public void testPoll_ContainerPauseRespected() {
+        final Consumer<String, String> consumer = controller(3).apply(mockConsumer);
+        addRecords(0, 7);
+        assertThat(offsets(consumer.poll(Duration.ZERO)), contains(0L, 1L, 2L));
+
+        consumer.pause(List.of(PARTITION));
+        assertThat(consumer.paused(), contains(PARTITION));
+        assertThat(offsets(consumer.poll(Duration.ZERO)), empty());
+
+        consumer.resume(List.of(PARTITION));
+        assertThat(consumer.paused(), empty());
+        assertThat(mockConsumer.paused(), contains(PARTITION));
+        assertThat(offsets(consumer.poll(Duration.ZERO)), contains(3L, 4L, 5L));
+    }
+
+    /**
+     * The consumers of a group share one limit gauge, which is not tied to the first consumer.
+     */
+    @Test
+    public void testApply_OneLimitGaugePerGroup() {
+        final AdaptivePollController controller = controller(3);
+        controller.apply(mockConsumer);
+        controller.apply(new MockConsumer<>(OffsetResetStrategy.EARLIEST));
+
+        assertThat(meterRegistry.find("kafkademo.poll.records.limit").gauges().size(), equalTo(1));
+        assertThat(meterRegistry.get("kafkademo.poll.records.limit").gauge().value(), equalTo(3.0));
+    }
+
+    private AdaptivePollController controller() {
+        return new AdaptivePollController(properties, MAX_POLL_INTERVAL_MS, meterRegistry);
+    }
+
+    /**
+     * A controller with a fixed limit.
+     */
+    private AdaptivePollController controller(final int limit) {
+        properties.getPoll().setMinRecords(limit);
+        properties.getPoll().setMaxRecords(limit);
+        properties.getPoll().setInitialRecords(limit);
+        return controller();
+    }
+
+    private void addRecords(final long from, final long to) {
+        for (long offset = from; offset < to; offset++) {
+            mockConsumer.addRecord(new ConsumerRecord<>(PARTITION.topic(), PARTITION.partition(), offset, null, "value-" + offset));
+        }
+    }
+
+    private static List<Long> offsets(final Iterable<ConsumerRecord<String, String>> records) {
+        return StreamSupport.stream(records.spliterator(), false).map(ConsumerRecord::offset).collect(Collectors.toList());
+    }
+}
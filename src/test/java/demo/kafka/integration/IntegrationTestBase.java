@@ -86,9 +86,13 @@ public abstract class IntegrationTestBase {
     }
 
     SendResult sendMessage(String topic, String requestId) throws Exception {
+        return sendMessage(topic, null, requestId);
+    }
+
+    SendResult sendMessage(String topic, Integer partition, String requestId) throws Exception {
         String message = "eventId: " + UUID.randomUUID() + ", requestId: " + requestId;
         final ProducerRecord<Long, String> record =
-                new ProducerRecord<>(topic, message);
+                new ProducerRecord<>(topic, partition, null, message);
 
         final SendResult result = (SendResult)kafkaTemplate.send(record).get();
         final RecordMetadata metadata = result.getRecordMetadata();
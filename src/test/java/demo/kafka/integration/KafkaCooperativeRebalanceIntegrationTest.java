@@ -0,0 +1,146 @@
+package demo.kafka.integration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.test.context.TestPropertySource;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
+@Slf4j
+@EmbeddedKafka(controlledShutdown = true, topics = "demo-standard-retry-topic", partitions = 4)
+@TestPropertySource(properties = "kafkademo.rebalance.eagerCompatible=false")
+public class KafkaCooperativeRebalanceIntegrationTest extends IntegrationTestBase {
+
+    private final static String RETRY_TEST_TOPIC = "demo-standard-retry-topic";
+    private final static String GROUP_ID = "kafkaStandardRetryConsumerGroup";
+    private final static int PARTITIONS = 4;
+
+    @Autowired
+    private ConcurrentKafkaListenerContainerFactory<String, String> kafkaStatefulRetryListenerContainerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private KafkaTestListener rebalanceTestReceiver;
+
+    @Configuration
+    static class TestConfig {
+
+        @Bean
+        public KafkaTestListener rebalanceTestReceiver() {
+            return new KafkaTestListener();
+        }
+    }
+
+    /**
+     * Use this receiver to record when the first instance emits messages on the outbound topic.
+     *
+     * The beans are uniquely named as the component scan also picks up the other integration tests' configuration.
+     */
+    public static class KafkaTestListener {
+        final List<Long> receivedTimes = Collections.synchronizedList(new ArrayList<>());
+
+        @KafkaListener(groupId = "KafkaCooperativeRebalanceIntegrationTest", topics = "demo-outbound-topic", autoStartup = "true")
+        void receive(@Payload final String payload) {
+            receivedTimes.add(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * The first instance (the application's StandardRetryConsumer) is assigned all 4 partitions.
+     *
+     * While messages are continually sent to every partition, a second instance joins the same consumer group.
+     *
+     * With the cooperative sticky assignor only the 2 partitions that move to the second instance are revoked from
+     * the first, which carries on processing its other 2 partitions through the rebalance.  With the eager assignor
+     * all 4 partitions would be revoked.
+     */
+    @Test
+    public void testCooperativeRebalance_OnlyMovedPartitionsRevoked() throws Exception {
+        stubFor(get(urlPathMatching("/api/kafkaretrydemo/.*"))
+                .willReturn(aResponse().withStatus(200).withHeader("Content-Type", "text/plain").withBody("Success")));
+
+        final AtomicInteger secondInstanceCount = new AtomicInteger();
+        final ConcurrentMessageListenerContainer<String, String> secondInstance = kafkaStatefulRetryListenerContainerFactory.createContainer(RETRY_TEST_TOPIC);
+        secondInstance.getContainerProperties().setGroupId(GROUP_ID);
+        secondInstance.getContainerProperties().setMessageListener((MessageListener<String, String>) record -> secondInstanceCount.incrementAndGet());
+
+        final Thread sender = new Thread(() -> {
+            int sent = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    sendMessage(RETRY_TEST_TOPIC, sent % PARTITIONS, requestId + "-" + sent++);
+                    TimeUnit.MILLISECONDS.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    log.error("Failed to send message", e);
+                }
+            }
+        });
+        sender.start();
+        try {
+            Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> rebalanceTestReceiver.receivedTimes.size() > 20);
+
+            final long rebalanceStart = System.currentTimeMillis();
+            secondInstance.start();
+            ContainerTestUtils.waitForAssignment(secondInstance, PARTITIONS / 2);
+            Awaitility.await().atMost(10, TimeUnit.SECONDS).until(secondInstanceCount::get, greaterThan(0));
+            TimeUnit.SECONDS.sleep(2);
+
+            final long maxPauseMs = maxGapSince(rebalanceStart);
+            final double revoked = meterRegistry.counter("kafkademo.rebalance.revoked", "group", GROUP_ID).count();
+            log.info("Rebalance revoked " + revoked + " partitions, longest processing pause on the first instance " + maxPauseMs + "ms");
+
+            assertThat(revoked, equalTo((double) PARTITIONS / 2));
+            assertThat(maxPauseMs, lessThan(5000L));
+        } finally {
+            sender.interrupt();
+            sender.join();
+            secondInstance.stop();
+        }
+    }
+
+    /**
+     * The longest gap between messages emitted by the first instance since the given time.
+     */
+    private long maxGapSince(final long since) {
+        long previous = since;
+        long maxGap = 0;
+        synchronized (rebalanceTestReceiver.receivedTimes) {
+            for (final Long received : rebalanceTestReceiver.receivedTimes) {
+                if (received >= since) {
+                    maxGap = Math.max(maxGap, received - previous);
+                    previous = received;
+                }
+            }
+        }
+        return maxGap;
+    }
+}
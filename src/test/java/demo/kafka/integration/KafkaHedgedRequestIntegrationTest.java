@@ -0,0 +1,80 @@
+package demo.kafka.integration;
+
+import java.util.Arrays;
+
+import demo.kafka.service.HedgedRequestExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.client.RestTemplate;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+@Slf4j
+@EmbeddedKafka(controlledShutdown = true, topics = "demo-standard-retry-topic")
+@TestPropertySource(properties = {"kafkademo.hedging.enabled=true", "kafkademo.hedging.percentile=0.9", "kafkademo.hedging.budget=0.2"})
+public class KafkaHedgedRequestIntegrationTest extends IntegrationTestBase {
+
+    private final static int REQUESTS = 400;
+
+    @Autowired
+    private HedgedRequestExecutor hedgedRequestExecutor;
+
+    @Value("${wiremock.server.port}")
+    private int wiremockPort;
+
+    /**
+     * Hedging is enabled, sending a hedge after the 90th percentile latency (via @TestPropertySource).
+     *
+     * The third party responds with a log normal random delay (median 20ms), so most responses are fast but a few are
+     * slow.
+     *
+     * The p99 latency of the same number of plain and hedged requests is compared.  A hedge is sent for the slow
+     * requests, and as it is unlikely to also be slow the p99 latency of the hedged requests is lower.
+     */
+    @Test
+    public void testHedgedRequests_ReduceTailLatency() {
+        stubFor(get(urlEqualTo("/api/kafkaretrydemo/" + requestId))
+                .willReturn(aResponse().withStatus(200).withHeader("Content-Type", "text/plain").withBody("Success")
+                        .withLogNormalRandomDelay(20, 1.2)));
+        final String url = "http://localhost:" + wiremockPort + "/api/kafkaretrydemo/" + requestId;
+
+        // Warm up, giving the executor the latency samples to base the hedge delay on.
+        for (int i = 0; i < 50; i++) {
+            hedgedRequestExecutor.getForEntity(url);
+        }
+
+        final RestTemplate restTemplate = new RestTemplate();
+        final long[] plainLatencies = new long[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            final long start = System.currentTimeMillis();
+            restTemplate.getForEntity(url, String.class);
+            plainLatencies[i] = System.currentTimeMillis() - start;
+        }
+
+        final long[] hedgedLatencies = new long[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            final long start = System.currentTimeMillis();
+            hedgedRequestExecutor.getForEntity(url);
+            hedgedLatencies[i] = System.currentTimeMillis() - start;
+        }
+
+        log.info("Plain requests p50: " + percentile(plainLatencies, 0.5) + "ms, p99: " + percentile(plainLatencies, 0.99) + "ms");
+        log.info("Hedged requests p50: " + percentile(hedgedLatencies, 0.5) + "ms, p99: " + percentile(hedgedLatencies, 0.99) + "ms");
+        assertThat(percentile(hedgedLatencies, 0.99), lessThan(percentile(plainLatencies, 0.99)));
+    }
+
+    private static long percentile(final long[] latencies, final double percentile) {
+        final long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(percentile * sorted.length) - 1];
+    }
+}
@@ -0,0 +1,69 @@
+package demo.kafka.integration;
+
+import java.util.concurrent.TimeUnit;
+
+import demo.kafka.consumer.StandardRetryConsumer;
+import lombok.extern.slf4j.Slf4j;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.TestPropertySource;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.findAll;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+
+@Slf4j
+@EmbeddedKafka(controlledShutdown = true, topics = "demo-standard-retry-topic", partitions = 3)
+@TestPropertySource(properties="kafkademo.retry.backoffMode=PARTITION")
+public class KafkaPartitionBackoffIntegrationTest extends IntegrationTestBase {
+
+    private final static String RETRY_TEST_TOPIC = "demo-standard-retry-topic";
+
+    @Autowired
+    private StandardRetryConsumer consumer;
+
+    /**
+     * The backoff mode is overridden to PARTITION (via @TestPropertySource).
+     *
+     * The retry is configured to retry 4 times with a 4 second pause.
+     *
+     * A record that always fails is sent to partition 0, followed by a record to each of the other partitions.
+     *
+     * Only partition 0 is paused during the backoff, so the records on the healthy partitions are processed well
+     * within the first 4 second pause, while the failing record continues to be retried.
+     */
+    @Test
+    public void testPartitionBackoff_HealthyPartitionsKeepFlowing() throws Exception {
+        final String failingRequestId = requestId + "-failing";
+        final String healthyRequestId1 = requestId + "-healthy1";
+        final String healthyRequestId2 = requestId + "-healthy2";
+        stubWiremock("/api/kafkaretrydemo/" + failingRequestId, 500, "Unavailable");
+        stubWiremock("/api/kafkaretrydemo/" + healthyRequestId1, 200, "Success");
+        stubWiremock("/api/kafkaretrydemo/" + healthyRequestId2, 200, "Success");
+
+        sendMessage(RETRY_TEST_TOPIC, 0, failingRequestId);
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).pollInterval(50, TimeUnit.MILLISECONDS)
+                .until(() -> "RETRYING".equals(consumer.getSentState(failingRequestId)));
+
+        final long start = System.currentTimeMillis();
+        sendMessage(RETRY_TEST_TOPIC, 1, healthyRequestId1);
+        sendMessage(RETRY_TEST_TOPIC, 2, healthyRequestId2);
+
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).pollInterval(50, TimeUnit.MILLISECONDS)
+                .until(() -> "SENT".equals(consumer.getSentState(healthyRequestId1)) && "SENT".equals(consumer.getSentState(healthyRequestId2)));
+        final long healthyLatencyMs = System.currentTimeMillis() - start;
+        log.info("Healthy partitions processed in " + healthyLatencyMs + "ms while partition 0 is backing off");
+        assertThat(healthyLatencyMs, lessThan(2000L));
+
+        // The failing record is still retried once its partition is resumed.
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).pollDelay(1, TimeUnit.SECONDS)
+                .until(() -> findAll(getRequestedFor(urlEqualTo("/api/kafkaretrydemo/" + failingRequestId))).size(), greaterThanOrEqualTo(2));
+        assertThat(consumer.getSentState(failingRequestId), equalTo("RETRYING"));
+    }
+}
@@ -0,0 +1,76 @@
+package demo.kafka.integration;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import demo.kafka.producer.ProducerBackpressureMonitor;
+import lombok.extern.slf4j.Slf4j;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+
+@Slf4j
+@EmbeddedKafka(controlledShutdown = true, topics = "demo-standard-retry-topic")
+@TestPropertySource(properties = {"kafkademo.producer.backpressure.enabled=true", "kafkademo.producer.backpressure.pauseSendAgeMs=1000",
+        "kafkademo.producer.backpressure.resumeSendAgeMs=200", "kafkademo.producer.backpressure.resumeAfterMs=1000"})
+public class KafkaProducerBackpressureIntegrationTest extends IntegrationTestBase {
+
+    private final static String RETRY_TEST_TOPIC = "demo-standard-retry-topic";
+
+    @Autowired
+    private ProducerFactory<String, String> producerFactory;
+
+    @Autowired
+    private ProducerBackpressureMonitor backpressureMonitor;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry registry;
+
+    @AfterEach
+    public void releaseOutboundSends() {
+        SlowOutboundInterceptor.release();
+    }
+
+    /**
+     * The outbound send is held up, so the listener thread waits on it.
+     *
+     * Once it has been waiting for the pause level (1 second, via @TestPropertySource) the listener containers are
+     * paused.  When the send is released the containers stay paused until no send has been waiting longer than the
+     * resume level for the resume period (1 second), and are then resumed.  A container that was already paused
+     * before is left paused.
+     */
+    @Test
+    public void testSlowOutboundSend_PausesThenResumesConsumption() throws Exception {
+        SlowOutboundInterceptor.hold(producerFactory);
+        final MessageListenerContainer otherContainer = registry.getListenerContainers().stream()
+                .filter(container -> !List.of(container.getContainerProperties().getTopics()).contains(RETRY_TEST_TOPIC))
+                .findFirst().orElseThrow();
+        otherContainer.pause();
+        stubWiremock("/api/kafkaretrydemo/" + requestId, 200, "Success");
+
+        sendMessage(RETRY_TEST_TOPIC, requestId);
+
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(backpressureMonitor::isPaused);
+        registry.getListenerContainers().forEach(container -> assertThat(container.isPauseRequested(), equalTo(true)));
+
+        final long released = System.currentTimeMillis();
+        SlowOutboundInterceptor.release();
+
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> !backpressureMonitor.isPaused());
+        final long resumedAfterMs = System.currentTimeMillis() - released;
+        log.info("Consumption resumed {}ms after the outbound send was released", resumedAfterMs);
+        registry.getListenerContainers().forEach(container -> assertThat(container.isPauseRequested(), equalTo(container == otherContainer)));
+        assertThat(resumedAfterMs, greaterThanOrEqualTo(1000L));
+        otherContainer.resume();
+    }
+}
@@ -0,0 +1,51 @@
+package demo.kafka.integration;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.TestPropertySource;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.findAll;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.hamcrest.Matchers.equalTo;
+
+@Slf4j
+@EmbeddedKafka(controlledShutdown = true, topics = "demo-standard-retry-topic")
+@TestPropertySource(properties = "kafkademo.producer.sendTimeoutMs=3000")
+public class KafkaProducerSendTimeoutIntegrationTest extends IntegrationTestBase {
+
+    private final static String RETRY_TEST_TOPIC = "demo-standard-retry-topic";
+
+    @Autowired
+    private ProducerFactory<String, String> producerFactory;
+
+    @AfterEach
+    public void releaseOutboundSends() {
+        SlowOutboundInterceptor.release();
+    }
+
+    /**
+     * The outbound send is held up for longer than the send timeout (3 seconds, via @TestPropertySource), so the
+     * listener stops waiting and the record fails as retryable.  It is then retried, calling the third party again.
+     */
+    @Test
+    public void testOutboundSendTimeout_RecordRetried() throws Exception {
+        SlowOutboundInterceptor.hold(producerFactory);
+        stubWiremock("/api/kafkaretrydemo/" + requestId, 200, "Success");
+
+        sendMessage(RETRY_TEST_TOPIC, requestId);
+
+        TimeUnit.SECONDS.sleep(4);
+        SlowOutboundInterceptor.release();
+
+        Awaitility.await().atMost(20, TimeUnit.SECONDS)
+                .until(() -> findAll(getRequestedFor(urlEqualTo("/api/kafkaretrydemo/" + requestId))).size(), equalTo(2));
+    }
+}
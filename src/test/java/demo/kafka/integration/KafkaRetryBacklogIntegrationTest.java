@@ -0,0 +1,66 @@
+package demo.kafka.integration;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import demo.kafka.actuator.PartitionBacklog;
+import demo.kafka.actuator.RetryBacklogEndpoint;
+import demo.kafka.actuator.RetryBacklogHealthIndicator;
+import lombok.extern.slf4j.Slf4j;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.notNullValue;
+
+@Slf4j
+@EmbeddedKafka(controlledShutdown = true, topics = "demo-stateful-retry-topic")
+@TestPropertySource(properties = {"kafka.consumer.maxPollIntervalMs=10000", "kafkademo.backlog.lagCacheTtlMs=1000"})
+public class KafkaRetryBacklogIntegrationTest extends IntegrationTestBase {
+
+    private final static String STATEFUL_RETRY_TEST_TOPIC = "demo-stateful-retry-topic";
+    private final static String GROUP_ID = "kafkaStatefulRetryConsumerGroup";
+
+    @Autowired
+    private RetryBacklogEndpoint retryBacklogEndpoint;
+
+    @Autowired
+    private RetryBacklogHealthIndicator retryBacklogHealthIndicator;
+
+    /**
+     * A record that always fails is sent to the stateful retry topic, so it is held in retry and not committed.
+     *
+     * The endpoint reports it as in retry, with a lag of one, on its partition of the stateful retry consumer group.
+     */
+    @Test
+    public void testRetryBacklog_ReportsRecordInRetry() throws Exception {
+        // prime the rest api mock to return service unavailable every time it's called
+        stubWiremock("/api/kafkaretrydemo/" + requestId, 500, "Unavailable");
+
+        final int partition = sendMessage(STATEFUL_RETRY_TEST_TOPIC, requestId).getRecordMetadata().partition();
+
+        Awaitility.await().atMost(15, TimeUnit.SECONDS).pollInterval(500, TimeUnit.MILLISECONDS)
+                .until(() -> backlog(partition) != null && backlog(partition).getRecordsInRetry() == 1
+                        && backlog(partition).getLag() != null && backlog(partition).getLag() == 1);
+
+        final PartitionBacklog backlog = backlog(partition);
+        log.info("Backlog: lag " + backlog.getLag() + ", records in retry " + backlog.getRecordsInRetry()
+                + ", oldest retry age " + backlog.getOldestRetryAgeMs() + "ms, time left " + backlog.getTimeLeftBeforePollIntervalMs() + "ms");
+        assertThat(backlog.getOldestRetryAgeMs(), greaterThan(0L));
+        assertThat(backlog.getTimeLeftBeforePollIntervalMs(), notNullValue());
+        assertThat(retryBacklogHealthIndicator.health().getStatus(), equalTo(Status.UP));
+    }
+
+    private PartitionBacklog backlog(final int partition) {
+        final List<PartitionBacklog> partitions = retryBacklogEndpoint.backlog().get(GROUP_ID);
+        return partitions == null ? null : partitions.stream()
+                .filter(backlog -> backlog.getTopic().equals(STATEFUL_RETRY_TEST_TOPIC) && backlog.getPartition() == partition)
+                .findFirst().orElse(null);
+    }
+}
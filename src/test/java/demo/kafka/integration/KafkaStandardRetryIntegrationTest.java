@@ -1,5 +1,6 @@
 package demo.kafka.integration;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
@@ -7,6 +8,7 @@ import java.util.concurrent.TimeUnit;
 
 import demo.kafka.KafkaDemoConfiguration;
 import demo.kafka.consumer.StandardRetryConsumer;
+import demo.kafka.tracing.LatencyTrace;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
@@ -71,10 +73,12 @@ public class KafkaStandardRetryIntegrationTest extends IntegrationTestBase {
      */
     public static class KafkaTestListener {
         CountDownLatch latch = new CountDownLatch(1);
+        MessageHeaders receivedHeaders;
 
         @KafkaListener(groupId = "KafkaStandardRetryIntegrationTest", topics = "demo-outbound-topic", autoStartup = "true")
         void receive(@Payload final String payload, @Headers final MessageHeaders headers) {
             log.debug("KafkaTestListener - Received message: " + payload);
+            receivedHeaders = headers;
             latch.countDown();
         }
     }
@@ -126,6 +130,11 @@ public class KafkaStandardRetryIntegrationTest extends IntegrationTestBase {
         // check for a message being emitted on demo-standard-outbound-topic
         testReceiver.latch.await(10, TimeUnit.SECONDS);
         assert testReceiver.latch.getCount() == 0;
+
+        // check the latency tracing headers record the retry
+        assert new String((byte[])testReceiver.receivedHeaders.get(LatencyTrace.ATTEMPT_COUNT_HEADER), StandardCharsets.UTF_8).equals("2");
+        assert testReceiver.receivedHeaders.containsKey(LatencyTrace.SOURCE_TIMESTAMP_HEADER);
+        assert testReceiver.receivedHeaders.containsKey(LatencyTrace.THIRDPARTY_MS_HEADER);
     }
 
     @Test
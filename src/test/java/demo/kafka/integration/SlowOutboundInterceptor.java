@@ -0,0 +1,62 @@
+package demo.kafka.integration;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerInterceptor;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.ProducerFactory;
+
+/**
+ * Holds up each send to the outbound topic until the test releases it, as a slow outbound topic would.
+ */
+public class SlowOutboundInterceptor implements ProducerInterceptor<Object, Object> {
+
+    // Outbound sends block until this is released.
+    private static volatile CountDownLatch release;
+
+    /**
+     * Hold up the outbound sends of producers created by the given factory from now on, until released.
+     */
+    static void hold(final ProducerFactory<String, String> producerFactory) {
+        ((DefaultKafkaProducerFactory<String, String>) producerFactory).updateConfigs(Map.of(ProducerConfig.INTERCEPTOR_CLASSES_CONFIG, SlowOutboundInterceptor.class.getName()));
+        ((DefaultKafkaProducerFactory<String, String>) producerFactory).reset();
+        release = new CountDownLatch(1);
+    }
+
+    static void release() {
+        final CountDownLatch current = release;
+        if (current != null) {
+            current.countDown();
+        }
+    }
+
+    @Override
+    public ProducerRecord<Object, Object> onSend(final ProducerRecord<Object, Object> record) {
+        final CountDownLatch current = release;
+        if (record.topic().equals("demo-outbound-topic") && current != null) {
+            try {
+                current.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return record;
+    }
+
+    @Override
+    public void onAcknowledgement(final RecordMetadata metadata, final Exception exception) {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void configure(final Map<String, ?> configs) {
+    }
+}
@@ -0,0 +1,77 @@
+package demo.kafka.logging;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import demo.kafka.properties.KafkaDemoProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+public class RetryLoggerTest {
+
+    private static final long WINDOW_MS = 60000;
+
+    private KafkaDemoProperties properties;
+
+    @BeforeEach
+    public void setUp() {
+        properties = new KafkaDemoProperties();
+        properties.getLogging().setFirstN(3);
+        properties.getLogging().setSampleEvery(4);
+        properties.getLogging().setWindowMs(WINDOW_MS);
+    }
+
+    /**
+     * The first 3 failures are logged, then 1 in every 4, each reporting the 3 suppressed since the last (-1 is
+     * suppressed).
+     */
+    @Test
+    public void testSample_FirstNThenOneInM() {
+        final RetryLogger retryLogger = new RetryLogger(properties);
+
+        assertThat(sample(retryLogger, IOException.class, 0, 11), contains(0L, 0L, 0L, -1L, -1L, -1L, 3L, -1L, -1L, -1L, 3L));
+    }
+
+    @Test
+    public void testSample_CountedPerExceptionClass() {
+        final RetryLogger retryLogger = new RetryLogger(properties);
+        sample(retryLogger, IOException.class, 0, 5);
+
+        assertThat(retryLogger.sample(IllegalStateException.class, 0), equalTo(0L));
+        assertThat(retryLogger.sample(IOException.class, 0), equalTo(-1L));
+    }
+
+    /**
+     * A new window starts the counts again, so a later outage is logged from its first failure, which reports the
+     * failures suppressed at the end of the previous one.
+     */
+    @Test
+    public void testSample_CountsRestartEachWindow() {
+        final RetryLogger retryLogger = new RetryLogger(properties);
+        assertThat(sample(retryLogger, IOException.class, 0, 5), contains(0L, 0L, 0L, -1L, -1L));
+
+        assertThat(sample(retryLogger, IOException.class, WINDOW_MS, 4), contains(2L, 0L, 0L, -1L));
+    }
+
+    @Test
+    public void testSample_FirstFailureInWindowAlwaysLogged() {
+        properties.getLogging().setFirstN(0);
+        final RetryLogger retryLogger = new RetryLogger(properties);
+
+        assertThat(sample(retryLogger, IOException.class, 0, 2), contains(0L, -1L));
+        assertThat(sample(retryLogger, IOException.class, WINDOW_MS, 1), contains(1L));
+    }
+
+    private static List<Long> sample(final RetryLogger retryLogger, final Class<?> type, final long now, final int failures) {
+        final List<Long> results = new ArrayList<>();
+        for (int i = 0; i < failures; i++) {
+            results.add(retryLogger.sample(type, now));
+        }
+        return results;
+    }
+}